@@ -0,0 +1,52 @@
+package benchmarks;
+
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import services.UserService;
+import services.UsernameRegistry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sign-in and the sign-up username check. The login cache is switched off so
+ * every {@link #authenticate()} pays for the lookup and the password hash;
+ * {@link LoginCacheBenchmark} measures repeat logins.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dauth.cacheTtlMs=0")
+public class AuthBenchmark extends SeededDatabase {
+    private final AtomicLong freeNames = new AtomicLong();
+    private UserService userService;
+
+    @Override
+    protected void createServices() throws SQLException {
+        userService = new UserService();
+        // Loads in the background; the warm-up iterations give it time to finish
+        UsernameRegistry.getInstance().warmUpAsync();
+    }
+
+    @Benchmark
+    public User authenticate() throws SQLException {
+        return userService.authenticate(BenchmarkDatabase.customerName(randomCustomerId()), BenchmarkDatabase.PASSWORD);
+    }
+
+    /** What UserService.usernameExists does for a name that is taken. */
+    @Benchmark
+    public boolean usernameExistsTaken() throws SQLException {
+        return usernameExists(BenchmarkDatabase.customerName(randomCustomerId()));
+    }
+
+    /** ...and for a new name, which the registry usually answers without a query. */
+    @Benchmark
+    public boolean usernameExistsFree() throws SQLException {
+        return usernameExists("newcustomer" + freeNames.incrementAndGet());
+    }
+
+    private boolean usernameExists(String username) throws SQLException {
+        try (Connection conn = dbService.getConnection()) {
+            return UsernameRegistry.getInstance().exists(conn, username);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import services.DBService;
+import services.PasswordHasher;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The in-process store database the benchmarks run against.
+ *
+ * The in-memory backend (H2 in MySQL mode). Starting the connection pool
+ * creates the schema with the application's own migrations, then it is
+ * seeded. Every JMH fork is a fresh JVM, so each fork seeds its own database
+ * once.
+ */
+final class BenchmarkDatabase {
+    /** Password of every seeded account. */
+    static final String PASSWORD = "benchmark";
+    static final String STAFF_USERNAME = "staff";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int SALES_DAYS = 365;
+
+    private static DBService dbService;
+    private static int productCount;
+    private static int customerCount;
+
+    private BenchmarkDatabase() {
+    }
+
+    static synchronized DBService start(int products, int customers, int sales) throws Exception {
+        if (dbService != null) {
+            return dbService;
+        }
+        System.setProperty("db.backend", "memory");
+
+        DBService db = new DBService();
+        seed(db, products, customers, sales);
+        productCount = products;
+        customerCount = customers;
+        dbService = db;
+        return db;
+    }
+
+    static int productCount() {
+        return productCount;
+    }
+
+    static int customerCount() {
+        return customerCount;
+    }
+
+    static String customerName(int id) {
+        return "customer" + id;
+    }
+
+    private static void seed(DBService db, int products, int customers, int sales) throws SQLException {
+        Random random = new Random(42);
+        // Every account shares one hash: hashing each one would take minutes at production cost
+        String hash = PasswordHasher.getInstance().hash(PASSWORD);
+        LocalDate today = LocalDate.now();
+
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            db.executeUpdate(conn, "INSERT INTO suppliers (name, contact) VALUES (?, ?)", "Supplier", "09170000000");
+            db.executeUpdate(conn, "INSERT INTO users (username, password, role_id) VALUES (?, ?, ?)",
+                    STAFF_USERNAME, hash, "Staff");
+
+            List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+            for (int i = 1; i <= products; i++) {
+                // Stock high enough that checkout benchmarks never run a product dry
+                rows.add(new Object[]{"Product " + i, 1 + random.nextInt(50000) / 100.0, 1_000_000_000, 1});
+                flushIfFull(db, conn, "INSERT INTO products (name, price, stocks, supplierId) VALUES (?, ?, ?, ?)",
+                        rows, i == products);
+            }
+            for (int i = 1; i <= customers; i++) {
+                rows.add(new Object[]{customerName(i), hash, "Address " + i, String.format("09%09d", i)});
+                flushIfFull(db, conn, "INSERT INTO customers (username, password, address, cellNo) VALUES (?, ?, ?, ?)",
+                        rows, i == customers);
+            }
+            for (int i = 1; i <= sales; i++) {
+                Date day = Date.valueOf(today.minusDays(random.nextInt(SALES_DAYS)));
+                rows.add(new Object[]{1 + random.nextInt(products), 1 + random.nextInt(5), day,
+                        1 + random.nextInt(customers)});
+                flushIfFull(db, conn,
+                        "INSERT INTO sales (productId, quantity_sold, sale_date, customer_id) VALUES (?, ?, ?, ?)",
+                        rows, i == sales);
+            }
+            for (int day = 0; day < SALES_DAYS; day++) {
+                rows.add(new Object[]{Date.valueOf(today.minusDays(day)), 1000 + random.nextInt(100000) / 100.0});
+            }
+            db.executeBatch(conn, "INSERT INTO totalsales (sale_date, amount) VALUES (?, ?)", rows);
+            conn.commit();
+        }
+    }
+
+    private static void flushIfFull(DBService db, Connection conn, String sql, List<Object[]> rows, boolean last)
+            throws SQLException {
+        if (rows.size() == BATCH_SIZE || (last && !rows.isEmpty())) {
+            db.executeBatch(conn, sql, rows);
+            rows.clear();
+        }
+    }
+}
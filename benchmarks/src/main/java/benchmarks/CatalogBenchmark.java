@@ -0,0 +1,23 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import services.DBService.ProductInfo;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/** The product list shown on the customer dashboard. */
+public class CatalogBenchmark extends SeededDatabase {
+
+    /** What the dashboard calls: served from the shared catalog once it is loaded. */
+    @Benchmark
+    public List<ProductInfo> getAvailableProducts() throws SQLException {
+        return dbService.getAvailableProducts();
+    }
+
+    /** The query behind the catalog, paid on every reload. */
+    @Benchmark
+    public List<ProductInfo> loadAllProducts() throws SQLException {
+        return dbService.loadAllProducts();
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import models.OrderLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Threads;
+import services.DBService.ProductInfo;
+import services.OrderService;
+import services.OrderService.OrderResult;
+import services.ProductCatalog;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The write side of a sale: the single-statement helpers and the whole
+ * checkout transaction, alone and with several terminals checking out at once.
+ */
+public class CheckoutBenchmark extends SeededDatabase {
+    private OrderService orderService;
+
+    @Override
+    protected void createServices() {
+        orderService = new OrderService(dbService);
+    }
+
+    @Benchmark
+    public boolean recordSale() {
+        return dbService.recordSale(randomProductId(), 1, randomCustomerId());
+    }
+
+    @Benchmark
+    public boolean updateTotalSales() {
+        return dbService.updateTotalSales(new Date(System.currentTimeMillis()), 9.99);
+    }
+
+    @Benchmark
+    public OrderResult placeOrder() throws SQLException {
+        return orderService.placeOrder(randomCustomerId(), randomOrder());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OrderResult placeOrderConcurrently() throws SQLException {
+        return orderService.placeOrder(randomCustomerId(), randomOrder());
+    }
+
+    /** One to three lines, like a typical cart. */
+    private static List<OrderLine> randomOrder() throws SQLException {
+        int lines = 1 + ThreadLocalRandom.current().nextInt(3);
+        List<OrderLine> order = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            ProductInfo product = ProductCatalog.getInstance().get(randomProductId());
+            order.add(new OrderLine(product.id, 1 + ThreadLocalRandom.current().nextInt(3), product.price));
+        }
+        return order;
+    }
+}
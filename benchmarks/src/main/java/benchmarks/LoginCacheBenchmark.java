@@ -0,0 +1,22 @@
+package benchmarks;
+
+import models.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import services.UserService;
+
+import java.sql.SQLException;
+
+/** A terminal signing the same account in again within the login cache's lifetime. */
+public class LoginCacheBenchmark extends SeededDatabase {
+    private UserService userService;
+
+    @Override
+    protected void createServices() throws SQLException {
+        userService = new UserService();
+    }
+
+    @Benchmark
+    public User authenticateRepeat() throws SQLException {
+        return userService.authenticate(BenchmarkDatabase.STAFF_USERNAME, BenchmarkDatabase.PASSWORD);
+    }
+}
@@ -0,0 +1,24 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import services.DBService;
+import services.DBService.OrderHistory;
+import services.DBService.OrderHistoryPage;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/** A customer's order history, for a random customer each call. */
+public class OrderHistoryBenchmark extends SeededDatabase {
+
+    @Benchmark
+    public List<OrderHistory> getCustomerOrderHistory() throws SQLException {
+        return dbService.getCustomerOrderHistory(randomCustomerId());
+    }
+
+    /** The first page as the history dialog asks for it, cached per customer. */
+    @Benchmark
+    public OrderHistoryPage firstHistoryPage() throws SQLException {
+        return dbService.getCustomerOrderHistoryPage(randomCustomerId(), null, DBService.HISTORY_PAGE_SIZE);
+    }
+}
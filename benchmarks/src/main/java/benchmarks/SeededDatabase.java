@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import services.DBService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common settings for the benchmarks: throughput plus sampled latency
+ * (percentiles), and a database seeded to the sizes given by the parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class SeededDatabase {
+    @Param({"1000"})
+    public int products;
+
+    @Param({"10000"})
+    public int customers;
+
+    @Param({"100000"})
+    public int sales;
+
+    protected DBService dbService;
+
+    @Setup
+    public void seedDatabase() throws Exception {
+        dbService = BenchmarkDatabase.start(products, customers, sales);
+        createServices();
+    }
+
+    /** Creates what the benchmark calls, once the database is ready. */
+    protected void createServices() throws Exception {
+    }
+
+    protected static int randomProductId() {
+        return 1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.productCount());
+    }
+
+    protected static int randomCustomerId() {
+        return 1 + ThreadLocalRandom.current().nextInt(BenchmarkDatabase.customerCount());
+    }
+}
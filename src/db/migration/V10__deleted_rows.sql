@@ -0,0 +1,10 @@
+-- Tombstones for the dashboard's diff refresh (services.TableChangeTracker): deleting
+-- a row from a dashboard table leaves its key here, so open tabs can drop that one row
+-- instead of reloading. A NULL row_id means the whole table was replaced (restore).
+CREATE TABLE deleted_rows (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    table_name VARCHAR(64) NOT NULL,
+    row_id BIGINT,
+    deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_deleted_rows_table ON deleted_rows (table_name, id);
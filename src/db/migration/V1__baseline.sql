@@ -0,0 +1,46 @@
+-- The store schema as it stood before versioned migrations. Databases that
+-- already have these tables are baselined at this version instead of running it
+-- (see dbconnection.SchemaMigrator).
+
+CREATE TABLE IF NOT EXISTS suppliers (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL,
+    contact VARCHAR(50)
+);
+
+CREATE TABLE IF NOT EXISTS products (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL,
+    price DOUBLE NOT NULL,
+    stocks INT NOT NULL DEFAULT 0,
+    supplierId INT
+);
+
+CREATE TABLE IF NOT EXISTS customers (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    address VARCHAR(50),
+    cellNo VARCHAR(11)
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    role_id VARCHAR(10) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS sales (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    productId INT NOT NULL,
+    quantity_sold INT NOT NULL,
+    sale_date DATE NOT NULL,
+    customer_id INT
+);
+
+CREATE TABLE IF NOT EXISTS totalsales (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    sale_date DATE NOT NULL,
+    amount DOUBLE NOT NULL DEFAULT 0
+);
@@ -0,0 +1,20 @@
+-- Split each day's total into shard rows so checkouts don't serialize on one row.
+-- Writers upsert into (sale_date, shard); readers sum the shards, usually through
+-- the totalsales_daily view.
+
+-- Fold duplicate rows per day left behind by the old select-then-insert
+CREATE TABLE totalsales_merged AS
+    SELECT sale_date, SUM(amount) AS amount FROM totalsales GROUP BY sale_date;
+DELETE FROM totalsales;
+
+ALTER TABLE totalsales ADD COLUMN shard INT NOT NULL DEFAULT 0;
+INSERT INTO totalsales (sale_date, shard, amount)
+    SELECT sale_date, 0, amount FROM totalsales_merged;
+DROP TABLE totalsales_merged;
+
+ALTER TABLE totalsales ADD CONSTRAINT uq_totalsales_date_shard UNIQUE (sale_date, shard);
+
+CREATE VIEW totalsales_daily AS
+    SELECT MIN(id) AS id, sale_date, SUM(amount) AS amount
+    FROM totalsales
+    GROUP BY sale_date;
@@ -0,0 +1,19 @@
+-- Per-day aggregates maintained in the checkout transaction, so reports never
+-- scan the sales table. Rebuild them from sales with SalesRollupService.rebuild()
+-- (Main --rebuild-rollups or Admin Controls).
+
+CREATE TABLE sales_daily_product (
+    sale_date DATE NOT NULL,
+    product_id INT NOT NULL,
+    units BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, product_id)
+);
+
+CREATE TABLE sales_daily_customer (
+    sale_date DATE NOT NULL,
+    customer_id INT NOT NULL,
+    units BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(15, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, customer_id)
+);
@@ -0,0 +1,3 @@
+-- Serves DBService.getCustomerOrderHistoryPage: filter on customer_id, keyset on
+-- (sale_date, id) in descending order, without a sort or a scan of other customers.
+CREATE INDEX idx_sales_customer_date ON sales (customer_id, sale_date, id);
@@ -0,0 +1,7 @@
+-- Login looks a username up in customers and users with one UNION ALL query,
+-- so both tables need an index on username.
+CREATE INDEX idx_customers_username ON customers (username);
+CREATE INDEX idx_users_username ON users (username);
+
+-- Passwords are now stored as pbkdf2$<iterations>$<salt>$<hash> (about 80
+-- characters), which the VARCHAR(255) password columns already hold.
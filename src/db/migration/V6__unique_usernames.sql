@@ -0,0 +1,7 @@
+-- Sign-up checks names against an in-memory filter first, so the database has
+-- the final say: a name can appear only once per table. Replaces the plain
+-- indexes from V5. Resolve any existing duplicates before running this.
+ALTER TABLE customers DROP INDEX idx_customers_username;
+ALTER TABLE users DROP INDEX idx_users_username;
+CREATE UNIQUE INDEX uq_customers_username ON customers (username);
+CREATE UNIQUE INDEX uq_users_username ON users (username);
@@ -0,0 +1,29 @@
+-- Append-only history of stock changes. Every update of products.stocks writes
+-- its delta here in the same transaction (InventoryService).
+CREATE TABLE inventory_journal (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id INT NOT NULL,
+    delta INT NOT NULL,
+    reason VARCHAR(16) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_inventory_journal_product ON inventory_journal (product_id, id);
+
+-- Stock per product as of a journal row, so audits only replay what came after.
+CREATE TABLE inventory_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    journal_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE (journal_id)
+);
+
+CREATE TABLE inventory_snapshot_stock (
+    snapshot_id BIGINT NOT NULL,
+    product_id INT NOT NULL,
+    stock INT NOT NULL,
+    PRIMARY KEY (snapshot_id, product_id)
+);
+
+-- Opening balance: today's stock becomes the first entry of every product's history.
+INSERT INTO inventory_journal (product_id, delta, reason)
+SELECT id, stocks, 'OPENING' FROM products WHERE stocks <> 0;
@@ -0,0 +1,4 @@
+-- Lets the Sales tab filter and sort by date without scanning the table.
+-- Per-customer lookups use idx_sales_customer_date (V4), the day's total uses
+-- uq_totalsales_date_shard (V2), and usernames have unique indexes (V6).
+CREATE INDEX idx_sales_sale_date ON sales (sale_date);
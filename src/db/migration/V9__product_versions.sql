@@ -0,0 +1,5 @@
+-- Change feed for open dashboards (services.ProductChangeFeed): every write to a
+-- product raises its version, and terminals poll for versions above the last one
+-- they saw instead of re-reading the whole table.
+ALTER TABLE products ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX idx_products_version ON products (version);
@@ -0,0 +1,18 @@
+package dbconnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A pooled connection that keeps prepared statements open between borrows.
+ */
+public interface CachingConnection extends Connection {
+
+    /**
+     * Returns a prepared statement for {@code sql} from this connection's LRU cache,
+     * preparing it on a miss. The statement belongs to the cache: callers must not
+     * close it and should close any ResultSet they open on it.
+     */
+    PreparedStatement prepareCached(String sql) throws SQLException;
+}
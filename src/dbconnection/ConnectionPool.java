@@ -0,0 +1,327 @@
+package dbconnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Connections handed out by {@link #borrow()} are proxies; calling {@code close()}
+ * on them returns the physical connection to the pool instead of closing it.
+ * Idle connections are validated on borrow, evicted after the idle timeout (down
+ * to the minimum size), and connections held longer than the leak timeout are
+ * reported together with the stack trace of the code that borrowed them.
+ * Each physical connection also keeps an LRU cache of prepared statements that
+ * survives across borrows (see {@link CachingConnection}).
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+    private final long idleTimeoutMs;
+    private final int validationTimeoutSec;
+    private final long leakTimeoutMs;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    public ConnectionPool(DBConfig config) throws SQLException {
+        this.url = config.getUrl();
+        this.user = config.getUser();
+        this.password = config.getPassword();
+        this.maxSize = Math.max(1, config.getPoolMaxSize());
+        this.minSize = Math.max(0, Math.min(config.getPoolMinSize(), maxSize));
+        this.borrowTimeoutMs = config.getBorrowTimeoutMs();
+        this.idleTimeoutMs = config.getIdleTimeoutMs();
+        this.validationTimeoutSec = config.getValidationTimeoutSec();
+        this.leakTimeoutMs = config.getLeakTimeoutMs();
+        this.statementCacheSize = Math.max(0, config.getStatementCacheSize());
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < minSize; i++) {
+            idle.offer(createEntry());
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMs, leakTimeoutMs > 0 ? leakTimeoutMs : idleTimeoutMs) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the borrow timeout when the pool is exhausted.
+     * The caller must close the returned connection to give it back.
+     */
+    public Connection borrow() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + borrowTimeoutMs + "ms waiting for a database connection ("
+                        + borrowed.size() + " of " + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isUsable(entry)) {
+                    break;
+                }
+                discard(entry);
+            }
+            if (entry == null) {
+                entry = createEntry();
+            }
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowedBy = leakTimeoutMs > 0 ? new Exception("Connection borrowed here") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+            return entry.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getActiveCount() { return borrowed.size(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getMaxSize() { return maxSize; }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry);
+        }
+    }
+
+    private PooledEntry createEntry() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        return new PooledEntry(physical);
+    }
+
+    private boolean isUsable(PooledEntry entry) {
+        try {
+            return !entry.physical.isClosed() && entry.physical.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledEntry entry) {
+        totalConnections.decrementAndGet();
+        entry.statementCache.clear();
+        try {
+            entry.physical.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing pooled connection", e);
+        }
+    }
+
+    private void release(PooledEntry entry) {
+        borrowed.remove(entry);
+        entry.closeOpenStatements();
+
+        boolean reusable = !shutdown;
+        try {
+            if (reusable && entry.physical.isClosed()) {
+                reusable = false;
+            }
+            if (reusable && !entry.physical.getAutoCommit()) {
+                // Never hand an open transaction to the next borrower
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            if (reusable && entry.physical.isReadOnly()) {
+                entry.physical.setReadOnly(false);
+            }
+        } catch (SQLException e) {
+            reusable = false;
+        }
+
+        if (reusable) {
+            entry.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(entry);
+        } else {
+            discard(entry);
+        }
+        permits.release();
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // Evict connections that sat idle too long, keeping at least minSize around.
+            // The least recently used connections are at the tail of the deque.
+            PooledEntry candidate;
+            while (totalConnections.get() > minSize
+                    && (candidate = idle.peekLast()) != null
+                    && now - candidate.lastUsed > idleTimeoutMs) {
+                if (idle.removeLastOccurrence(candidate)) {
+                    discard(candidate);
+                }
+            }
+
+            while (!shutdown && totalConnections.get() < minSize) {
+                idle.offerLast(createEntry());
+            }
+
+            if (leakTimeoutMs > 0) {
+                for (PooledEntry entry : borrowed) {
+                    if (!entry.leakReported && now - entry.borrowedAt > leakTimeoutMs) {
+                        entry.leakReported = true;
+                        LOGGER.log(Level.WARNING, "Possible connection leak: connection held for "
+                                + (now - entry.borrowedAt) + "ms", entry.borrowedBy);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not refill connection pool", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Connection pool housekeeping failed", e);
+        }
+    }
+
+    /** A physical connection owned by the pool. */
+    private class PooledEntry {
+        final Connection physical;
+        final List<Statement> openStatements = new ArrayList<>();
+        final StatementCache statementCache;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Exception borrowedBy;
+        volatile boolean leakReported;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, statementCacheSize);
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{CachingConnection.class},
+                    new Handle(this));
+        }
+
+        void closeOpenStatements() {
+            for (Statement statement : openStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.FINE, "Error closing statement on release", e);
+                }
+            }
+            openStatements.clear();
+        }
+    }
+
+    /** The connection a caller sees; closing it returns the entry to the pool exactly once. */
+    private class Handle implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean closed;
+
+        Handle(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "prepareCached":
+                    if (closed) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (statementCacheSize == 0) {
+                        return track(entry.physical.prepareStatement((String) args[0]));
+                    }
+                    return entry.statementCache.get((String) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + entry.physical;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement statement) {
+                track(statement);
+            }
+            return result;
+        }
+
+        private Statement track(Statement statement) {
+            entry.openStatements.removeIf(s -> isClosedQuietly(s));
+            entry.openStatements.add(statement);
+            return statement;
+        }
+
+        private boolean isClosedQuietly(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package dbconnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Database and connection pool settings.
+ *
+ * Values are read from the file named by the {@code db.config} system property,
+ * otherwise from {@code db.properties} in the working directory, otherwise from
+ * {@code db.properties} on the classpath. Any key can also be overridden with a
+ * system property of the same name (e.g. {@code -Dpool.maxSize=20}).
+ */
+public class DBConfig {
+    private static final Logger LOGGER = Logger.getLogger(DBConfig.class.getName());
+
+    private final Properties props;
+
+    private DBConfig(Properties props) {
+        this.props = props;
+    }
+
+    public static DBConfig load() {
+        Properties props = new Properties();
+        String configured = System.getProperty("db.config");
+        Path file = Paths.get(configured != null ? configured : "db.properties");
+
+        try {
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    props.load(in);
+                }
+            } else {
+                try (InputStream in = DBConfig.class.getResourceAsStream("/db.properties")) {
+                    if (in != null) {
+                        props.load(in);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read database config, using defaults", e);
+        }
+        return new DBConfig(props);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = props.getProperty(key);
+        }
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOGGER.warning("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * {@code db.backend}: "mysql" (the default) connects to {@code db.url};
+     * "embedded" keeps the database in local files at {@code db.embeddedPath};
+     * "memory" keeps it in memory until the application exits. The last two
+     * run H2 in MySQL mode and need no server.
+     */
+    public String getBackend() { return getString("db.backend", "mysql").toLowerCase(Locale.ROOT); }
+
+    public String getUrl() {
+        switch (getBackend()) {
+            case "embedded":
+                return "jdbc:h2:file:" + getString("db.embeddedPath", "./data/managesystem") + ";MODE=MySQL;LOCK_TIMEOUT=10000";
+            case "memory":
+                return "jdbc:h2:mem:managesystem;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+            case "mysql":
+                return getString("db.url", "jdbc:mysql://localhost:3306/managesystem");
+            default:
+                LOGGER.warning("Unknown db.backend " + getBackend() + ", using mysql");
+                return getString("db.url", "jdbc:mysql://localhost:3306/managesystem");
+        }
+    }
+
+    public Dialect getDialect() { return Dialect.forUrl(getUrl()); }
+
+    public String getUser() { return getString("db.user", "root"); }
+    public String getPassword() { return getString("db.password", ""); }
+
+    public int getPoolMinSize() { return getInt("pool.minSize", 2); }
+    public int getPoolMaxSize() { return getInt("pool.maxSize", 10); }
+    public long getBorrowTimeoutMs() { return getLong("pool.borrowTimeoutMs", 5000); }
+    public long getIdleTimeoutMs() { return getLong("pool.idleTimeoutMs", 300000); }
+    public int getValidationTimeoutSec() { return getInt("pool.validationTimeoutSec", 2); }
+    public long getLeakTimeoutMs() { return getLong("pool.leakTimeoutMs", 60000); }
+    public int getStatementCacheSize() { return getInt("pool.statementCacheSize", 64); }
+}
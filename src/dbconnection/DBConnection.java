@@ -1,19 +1,49 @@
 package dbconnection;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DBConnection {
-    private static Connection connection;
-    
+    private static ConnectionPool pool;
+    private static Dialect dialect;
+
+    /**
+     * Borrows a connection from the shared pool. Close it when done to return it;
+     * the physical connection stays open for the next caller.
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            String url = "jdbc:mysql://localhost:3306/managesystem";
-            String user = "root";
-            String password = "";
-            connection = DriverManager.getConnection(url, user, password);
+        return getPool().borrow();
+    }
+
+    /** Starts the pool on first use, after bringing the schema up to date. */
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null) {
+            DBConfig config = DBConfig.load();
+            ConnectionPool started = new ConnectionPool(config);
+            if (config.getBoolean("migrations.enabled", true)) {
+                try (Connection conn = started.borrow()) {
+                    new SchemaMigrator(config).migrate(conn);
+                } catch (SQLException e) {
+                    started.shutdown();
+                    throw e;
+                }
+            }
+            pool = started;
+            dialect = config.getDialect();
+        }
+        return pool;
+    }
+
+    /** SQL dialect of the database the pool connects to. */
+    public static synchronized Dialect getDialect() throws SQLException {
+        getPool();
+        return dialect;
+    }
+
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
         }
-        return connection;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package dbconnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SQL that differs between the supported database engines. Chosen from
+ * the JDBC URL, so a {@code db.url} pointing at H2 works like
+ * {@code db.backend=embedded}.
+ */
+public enum Dialect {
+    MYSQL {
+        @Override
+        public String upsertAdding(String table, String[] keys, String[] counters) {
+            List<String> updates = new ArrayList<>();
+            for (String counter : counters) {
+                updates.add(counter + " = " + counter + " + VALUES(" + counter + ")");
+            }
+            return "INSERT INTO " + table + " (" + columns(keys, counters) + ") VALUES (" + placeholders(keys, counters)
+                    + ") ON DUPLICATE KEY UPDATE " + String.join(", ", updates);
+        }
+
+        @Override
+        public int streamingFetchSize(int fetchSize) {
+            return Integer.MIN_VALUE; // Connector/J only streams with this sentinel
+        }
+
+        @Override
+        public void beginSnapshot(Connection conn) throws SQLException {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                // A plain transaction would take its snapshot at the first read, table by table
+                statement.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+        }
+    },
+
+    /** H2, run in MySQL compatibility mode for the rest of the SQL. */
+    H2 {
+        @Override
+        public String upsertAdding(String table, String[] keys, String[] counters) {
+            List<String> match = new ArrayList<>();
+            for (String key : keys) {
+                match.add("t." + key + " = s." + key);
+            }
+            List<String> updates = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            for (String key : keys) {
+                values.add("s." + key);
+            }
+            for (String counter : counters) {
+                updates.add(counter + " = t." + counter + " + s." + counter);
+                values.add("s." + counter);
+            }
+            String columns = columns(keys, counters);
+            return "MERGE INTO " + table + " t USING (VALUES (" + placeholders(keys, counters) + ")) AS s ("
+                    + columns + ") ON " + String.join(" AND ", match)
+                    + " WHEN MATCHED THEN UPDATE SET " + String.join(", ", updates)
+                    + " WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + String.join(", ", values) + ")";
+        }
+
+        @Override
+        public int streamingFetchSize(int fetchSize) {
+            return fetchSize;
+        }
+
+        @Override
+        public void beginSnapshot(Connection conn) throws SQLException {
+            // H2's REPEATABLE READ may still see rows other transactions insert; SERIALIZABLE can't
+            conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            conn.setAutoCommit(false);
+            try (Statement statement = conn.createStatement()) {
+                statement.execute("SELECT 1"); // the snapshot starts with the first statement
+            }
+        }
+    };
+
+    public static Dialect forUrl(String url) {
+        return url != null && url.startsWith("jdbc:h2:") ? H2 : MYSQL;
+    }
+
+    /**
+     * An insert that adds to the counter columns when a row with the same
+     * unique key exists. Parameters are the key values, then the amounts.
+     */
+    public abstract String upsertAdding(String table, String[] keys, String[] counters);
+
+    /** The fetch size that makes the driver stream a large result instead of buffering it. */
+    public abstract int streamingFetchSize(int fetchSize);
+
+    /**
+     * Starts a transaction whose reads all see the database as of this call,
+     * across every table. The caller commits it and restores the connection's
+     * isolation level afterwards.
+     */
+    public abstract void beginSnapshot(Connection conn) throws SQLException;
+
+    private static String columns(String[] keys, String[] counters) {
+        return String.join(", ", keys) + ", " + String.join(", ", counters);
+    }
+
+    private static String placeholders(String[] keys, String[] counters) {
+        return String.join(", ", Collections.nCopies(keys.length + counters.length, "?"));
+    }
+}
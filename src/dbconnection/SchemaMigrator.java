@@ -0,0 +1,309 @@
+package dbconnection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema up to date when the connection pool starts.
+ *
+ * Migrations are the {@code V<n>__<description>.sql} scripts under
+ * {@code db/migration} on the classpath (src/db/migration in the source tree),
+ * applied in version order and recorded in {@code schema_version}. A database
+ * that has the store tables but no {@code schema_version} yet is baselined at
+ * {@code migrations.baselineVersion} (default 1): set it to the last script
+ * that was applied by hand before the first start with this runner.
+ *
+ * Each script is claimed by inserting its row first, so when several terminals
+ * start at once one applies it and the others wait for it to finish. MySQL
+ * commits DDL as it goes, so a failed script is not rolled back; its row is
+ * removed and the error reported, and the script runs again on the next start.
+ */
+public class SchemaMigrator {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrator.class.getName());
+
+    private static final String LOCATION = "/db/migration";
+    private static final String BASELINE = "<< baseline >>";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT NOT NULL PRIMARY KEY, " +
+            "description VARCHAR(200) NOT NULL, " +
+            "script VARCHAR(200) NOT NULL, " +
+            "checksum BIGINT, " +
+            "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "execution_ms BIGINT, " +
+            "success BOOLEAN NOT NULL)";
+    private static final String CLAIM_SQL =
+            "INSERT INTO schema_version (version, description, script, checksum, success) VALUES (?, ?, ?, ?, ?)";
+    private static final long POLL_MS = 500;
+
+    private final int baselineVersion;
+    private final long waitMs;
+
+    public SchemaMigrator(DBConfig config) {
+        this.baselineVersion = config.getInt("migrations.baselineVersion", 1);
+        this.waitMs = config.getLong("migrations.waitMs", 120000);
+    }
+
+    /** Applies every pending migration and returns how many this call ran. */
+    public int migrate(Connection conn) throws SQLException {
+        List<Migration> migrations = findMigrations();
+        conn.setAutoCommit(true);
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(CREATE_TABLE_SQL);
+        }
+
+        Map<Integer, Applied> applied = loadApplied(conn);
+        if (applied.isEmpty() && tableExists(conn, "products")) {
+            insertRow(conn, baselineVersion, BASELINE, BASELINE, null, true);
+            LOGGER.info("Existing database baselined at version " + baselineVersion);
+            applied = loadApplied(conn);
+        }
+        int baseline = 0;
+        for (Applied row : applied.values()) {
+            if (BASELINE.equals(row.script)) {
+                baseline = Math.max(baseline, row.version);
+            }
+        }
+
+        int ran = 0;
+        for (Migration migration : migrations) {
+            if (migration.version <= baseline) {
+                continue;
+            }
+            Applied done = applied.get(migration.version);
+            if (done != null && done.success) {
+                if (done.checksum != null && done.checksum != migration.checksum) {
+                    LOGGER.warning(migration.script + " has changed since it was applied; edit the schema with a new migration instead");
+                }
+                continue;
+            }
+            if (done == null && insertRow(conn, migration.version, migration.description, migration.script,
+                    migration.checksum, false)) {
+                apply(conn, migration);
+                ran++;
+            } else {
+                awaitOtherTerminal(conn, migration);
+            }
+        }
+        return ran;
+    }
+
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        long started = System.currentTimeMillis();
+        List<String> statements = split(migration.sql);
+        for (int i = 0; i < statements.size(); i++) {
+            try (Statement statement = conn.createStatement()) {
+                statement.execute(statements.get(i));
+            } catch (SQLException e) {
+                try (PreparedStatement delete = conn.prepareStatement(
+                        "DELETE FROM schema_version WHERE version = ? AND success = FALSE")) {
+                    delete.setInt(1, migration.version);
+                    delete.executeUpdate();
+                }
+                throw new SQLException("Migration " + migration.script + " failed at statement " + (i + 1)
+                        + " (earlier statements may already be applied): " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        try (PreparedStatement done = conn.prepareStatement(
+                "UPDATE schema_version SET success = TRUE, execution_ms = ? WHERE version = ?")) {
+            done.setLong(1, elapsed);
+            done.setInt(2, migration.version);
+            done.executeUpdate();
+        }
+        LOGGER.info("Applied " + migration.script + " in " + elapsed + " ms");
+    }
+
+    /** Another terminal claimed the script; wait until it reports success. */
+    private void awaitOtherTerminal(Connection conn, Migration migration) throws SQLException {
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (true) {
+            Applied row = loadApplied(conn).get(migration.version);
+            if (row == null) {
+                throw new SQLException("Migration " + migration.script + " failed on another terminal; see its log");
+            }
+            if (row.success) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new SQLException("Migration " + migration.script + " has been running elsewhere for over "
+                        + waitMs + " ms; if no terminal is applying it, delete its row from schema_version");
+            }
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for migration " + migration.script, e);
+            }
+        }
+    }
+
+    /** Inserts a schema_version row; false if the version already has one. */
+    private static boolean insertRow(Connection conn, int version, String description, String script,
+                                     Long checksum, boolean success) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement(CLAIM_SQL)) {
+            insert.setInt(1, version);
+            insert.setString(2, description);
+            insert.setString(3, script);
+            insert.setObject(4, checksum);
+            insert.setBoolean(5, success);
+            insert.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return false;
+        } catch (SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false; // drivers that don't use the subclass
+            }
+            throw e;
+        }
+    }
+
+    private static Map<Integer, Applied> loadApplied(Connection conn) throws SQLException {
+        Map<Integer, Applied> applied = new HashMap<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, script, checksum, success FROM schema_version")) {
+            while (rs.next()) {
+                long checksum = rs.getLong(3);
+                Applied row = new Applied(rs.getInt(1), rs.getString(2), rs.wasNull() ? null : checksum, rs.getBoolean(4));
+                applied.put(row.version, row);
+            }
+        }
+        return applied;
+    }
+
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        // Stored lower case by MySQL on most installs, upper case by H2
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), conn.getSchema(), name, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Statements of a script: comment lines dropped, split on semicolons. */
+    private static List<String> split(String script) {
+        StringBuilder sql = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String statement : sql.toString().split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.trim());
+            }
+        }
+        return statements;
+    }
+
+    /** The migration scripts on the classpath, in version order. */
+    private static List<Migration> findMigrations() throws SQLException {
+        URL url = SchemaMigrator.class.getResource(LOCATION);
+        if (url == null) {
+            LOGGER.warning("No " + LOCATION + " on the classpath; schema migrations skipped");
+            return Collections.emptyList();
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                FileSystem jar;
+                try {
+                    jar = FileSystems.newFileSystem(uri, Collections.emptyMap());
+                } catch (FileSystemAlreadyExistsException e) {
+                    jar = FileSystems.getFileSystem(uri);
+                }
+                return read(jar.getPath(LOCATION));
+            }
+            return read(Path.of(uri));
+        } catch (IOException | URISyntaxException e) {
+            throw new SQLException("Could not read the migration scripts", e);
+        }
+    }
+
+    private static List<Migration> read(Path dir) throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher name = SCRIPT_NAME.matcher(file.getFileName().toString());
+                if (!name.matches()) {
+                    continue;
+                }
+                byte[] bytes;
+                try (InputStream in = Files.newInputStream(file)) {
+                    bytes = in.readAllBytes();
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                migrations.add(new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '),
+                        file.getFileName().toString(), crc.getValue(), new String(bytes, StandardCharsets.UTF_8)));
+            }
+        }
+        migrations.sort(Comparator.comparingInt(m -> m.version));
+        return migrations;
+    }
+
+    private static class Applied {
+        final int version;
+        final String script;
+        final Long checksum;
+        final boolean success;
+
+        Applied(int version, String script, Long checksum, boolean success) {
+            this.version = version;
+            this.script = script;
+            this.checksum = checksum;
+            this.success = success;
+        }
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final String script;
+        final long checksum;
+        final String sql;
+
+        Migration(int version, String description, String script, long checksum, String sql) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            this.checksum = checksum;
+            this.sql = sql;
+        }
+    }
+}
@@ -1,19 +1,42 @@
 package gui;
 
+import dbconnection.DBConfig;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import models.Order;
+import models.OrderLine;
 import models.User;
 import services.DBService;
+import services.OrderQueue;
+import services.OrderService;
+import services.ProductCatalog;
+import services.ProductChangeFeed;
+import services.StockReservationService;
 
 public class CustomerDashboardFrame extends JFrame {
     private final User user;
     private final DBService dbService;
+    private final OrderQueue orderQueue = OrderQueue.getInstance();
     private JTable productTable;
+    private TableRowSorter<DefaultTableModel> productSorter;
+    private JTextField searchField;
+    private Timer searchDebounce;
+    private Set<Integer> searchMatches; // null while the search box is empty
+    private JLabel statusLabel;
+    private int ordersInFlight; // only touched on the event thread
+    private final Consumer<List<DBService.ProductInfo>> productChanges =
+        changed -> SwingUtilities.invokeLater(() -> applyProductChanges(changed));
 
     public CustomerDashboardFrame(User user) throws Exception {
         this.user = user;
@@ -21,10 +44,29 @@ public class CustomerDashboardFrame extends JFrame {
 
         setTitle("Customer Dashboard - " + user.getUsername());
         setSize(800, 600);
-        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (noOrdersInFlight()) {
+                    dispose();
+                    System.exit(0);
+                }
+            }
+        });
         setLocationRelativeTo(null);
 
         initUI();
+        ProductChangeFeed.getInstance().subscribe(productChanges);
+    }
+
+    @Override
+    public void dispose() {
+        ProductChangeFeed.getInstance().unsubscribe(productChanges);
+        if (searchDebounce != null) {
+            searchDebounce.stop();
+        }
+        super.dispose();
     }
 
     private void initUI() {
@@ -33,31 +75,39 @@ public class CustomerDashboardFrame extends JFrame {
         productTable = createProductTable();
         JScrollPane scrollPane = new JScrollPane(productTable);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(createSearchPanel(), BorderLayout.NORTH);
 
         JPanel orderPanel = new JPanel(new FlowLayout());
         JButton orderBtn = new JButton("Place Order");
         JButton clearBtn = new JButton("Clear Selection");
+        JButton historyBtn = new JButton("Order History");
         JButton logoutBtn = new JButton("Logout");
 
         orderBtn.addActionListener(e -> showOrderConfirmation());
         clearBtn.addActionListener(e -> clearSelections());
+        historyBtn.addActionListener(e -> showOrderHistory());
         logoutBtn.addActionListener(e -> {
-            new LoginFrame().setVisible(true);
-            dispose();
+            if (noOrdersInFlight()) {
+                new LoginFrame().setVisible(true);
+                dispose();
+            }
         });
 
         orderPanel.add(orderBtn);
         orderPanel.add(clearBtn);
+        orderPanel.add(historyBtn);
         orderPanel.add(logoutBtn);
-        mainPanel.add(orderPanel, BorderLayout.SOUTH);
+        statusLabel = new JLabel(" ");
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(orderPanel, BorderLayout.CENTER);
+        southPanel.add(statusLabel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
     }
 
     private JTable createProductTable() {
         try {
-            String query = "SELECT id, name, price, stocks FROM products WHERE stocks > 0";
-            ResultSet rs = dbService.executeQuery(query);
             DefaultTableModel model = new DefaultTableModel(
                 new Object[]{"ID", "Name", "Price", "Available", "Order Quantity"}, 0
             ) {
@@ -70,12 +120,12 @@ public class CustomerDashboardFrame extends JFrame {
                 }
             };
 
-            while (rs.next()) {
+            for (DBService.ProductInfo product : dbService.getAvailableProducts()) {
                 model.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getDouble("price"),
-                    rs.getInt("stocks"),
+                    product.id,
+                    product.name,
+                    product.price,
+                    product.stock,
                     0
                 });
             }
@@ -90,6 +140,72 @@ public class CustomerDashboardFrame extends JFrame {
         }
     }
 
+    // Filters the product table as the customer types, once typing pauses for search.debounceMs
+    private JPanel createSearchPanel() {
+        productSorter = new TableRowSorter<>((DefaultTableModel) productTable.getModel());
+        for (int i = 0; i < productTable.getColumnCount(); i++) {
+            productSorter.setSortable(i, false);
+        }
+        productTable.setRowSorter(productSorter);
+
+        searchField = new JTextField(30);
+        searchDebounce = new Timer(Math.max(0, DBConfig.load().getInt("search.debounceMs", 150)), e -> applySearch());
+        searchDebounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+        });
+
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+        return searchPanel;
+    }
+
+    /**
+     * Shows only the products matching the search box, looked up in the
+     * catalog's in-memory name index. Rows with a quantity entered stay
+     * visible, so the order on screen is always the order that gets placed.
+     */
+    private void applySearch() {
+        String query = searchField.getText();
+        Set<Integer> matches = null;
+        if (!query.isBlank()) {
+            try {
+                matches = ProductCatalog.getInstance().search(query);
+            } catch (SQLException e) {
+                JOptionPane.showMessageDialog(this,
+                    "Failed to search products: " + e.getMessage(),
+                    "Database Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+        // Re-filtering cancels a quantity being typed, so only do it when the result differs
+        if (matches == null ? searchMatches == null : matches.equals(searchMatches)) {
+            return;
+        }
+        searchMatches = matches;
+        if (matches == null) {
+            productSorter.setRowFilter(null);
+            return;
+        }
+        Set<Integer> shown = matches;
+        productSorter.setRowFilter(new RowFilter<DefaultTableModel, Integer>() {
+            public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
+                return shown.contains(entry.getValue(0)) || (int) entry.getValue(4) > 0;
+            }
+        });
+    }
+
     private void clearSelections() {
         DefaultTableModel model = (DefaultTableModel) productTable.getModel();
         for (int i = 0; i < model.getRowCount(); i++) {
@@ -98,6 +214,71 @@ public class CustomerDashboardFrame extends JFrame {
         productTable.clearSelection();
     }
 
+    private void showOrderHistory() {
+        JDialog historyDialog = new JDialog(this, "Order History", true);
+        historyDialog.setLayout(new BorderLayout());
+        historyDialog.setSize(600, 400);
+        historyDialog.setLocationRelativeTo(this);
+
+        DefaultTableModel historyModel = new DefaultTableModel(
+            new Object[]{"Date", "Product", "Quantity", "Unit Price", "Total"}, 0
+        ) {
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable historyTable = new JTable(historyModel);
+
+        JButton moreBtn = new JButton("Load More");
+        JButton closeBtn = new JButton("Close");
+        String[] nextToken = {null};
+
+        Runnable loadPage = () -> {
+            moreBtn.setEnabled(false);
+            new SwingWorker<DBService.OrderHistoryPage, Void>() {
+                @Override
+                protected DBService.OrderHistoryPage doInBackground() throws Exception {
+                    return dbService.getCustomerOrderHistoryPage(user.getId(), nextToken[0], DBService.HISTORY_PAGE_SIZE);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        DBService.OrderHistoryPage page = get();
+                        for (DBService.OrderHistory item : page.items) {
+                            historyModel.addRow(new Object[]{
+                                item.saleDate,
+                                item.productName,
+                                item.quantity,
+                                String.format("₱%.2f", item.unitPrice),
+                                String.format("₱%.2f", item.total)
+                            });
+                        }
+                        nextToken[0] = page.nextToken;
+                        moreBtn.setEnabled(page.nextToken != null);
+                    } catch (Exception ex) {
+                        JOptionPane.showMessageDialog(historyDialog,
+                            "Failed to load order history: " + ex.getMessage(),
+                            "Database Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        };
+
+        moreBtn.addActionListener(e -> loadPage.run());
+        closeBtn.addActionListener(e -> historyDialog.dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(moreBtn);
+        buttonPanel.add(closeBtn);
+
+        historyDialog.add(new JScrollPane(historyTable), BorderLayout.CENTER);
+        historyDialog.add(buttonPanel, BorderLayout.SOUTH);
+
+        loadPage.run();
+        historyDialog.setVisible(true);
+    }
+
     private void showOrderConfirmation() {
         DefaultTableModel model = (DefaultTableModel) productTable.getModel();
         List<ProductOrder> orderItems = new ArrayList<>();
@@ -206,22 +387,8 @@ public class CustomerDashboardFrame extends JFrame {
                 JOptionPane.showMessageDialog(paymentDialog, 
                     "Insufficient payment! Please enter at least ₱" + total,
                     "Payment Error", JOptionPane.ERROR_MESSAGE);
-            } else {
-                if (processOrder()) {
-                    JOptionPane.showMessageDialog(this, 
-                        String.format("Order placed successfully!\nChange: ₱%.2f", (payment - total)),
-                        "Order Confirmation", JOptionPane.INFORMATION_MESSAGE);
-                    paymentDialog.dispose();
-                    
-                    // Ask user if they want to continue ordering
-                    int option = JOptionPane.showConfirmDialog(this,
-                        "Order placed successfully! Would you like to continue shopping?",
-                        "Continue Shopping?", JOptionPane.YES_NO_OPTION);
-                    
-                    if (option == JOptionPane.NO_OPTION) {
-                        clearSelections();
-                    }
-                }
+            } else if (processOrder(payment - total)) {
+                paymentDialog.dispose();
             }
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(paymentDialog, 
@@ -241,130 +408,155 @@ public class CustomerDashboardFrame extends JFrame {
     paymentDialog.setVisible(true);
 }
 
-private boolean processOrder() {
+// Queues the order and returns at once; the result is reported when a worker has placed it
+private boolean processOrder(double change) {
     DefaultTableModel model = (DefaultTableModel) productTable.getModel();
-    Connection conn = null;
-
-    try {
-        conn = dbService.getConnection();
-        conn.setAutoCommit(false);
-
-        String updateStockSQL = "UPDATE products SET stocks = stocks - ? WHERE id = ?";
-        String recordSaleSQL = "INSERT INTO sales (productId, quantity_sold, sale_date, customer_id) VALUES (?, ?, ?, ?)";
-        String checkTotalSalesSQL = "SELECT amount FROM totalsales WHERE sale_date = ?";
-        String updateTotalSalesSQL = "UPDATE totalsales SET amount = amount + ? WHERE sale_date = ?";
-        String insertTotalSalesSQL = "INSERT INTO totalsales (sale_date, amount) VALUES (?, ?)";
-
-        PreparedStatement updateStmt = conn.prepareStatement(updateStockSQL);
-        PreparedStatement salesStmt = conn.prepareStatement(recordSaleSQL);
-
-        double totalAmount = 0;
-        Date today = new Date(System.currentTimeMillis());
-
-        for (int i = 0; i < model.getRowCount(); i++) {
-            int qty = (int) model.getValueAt(i, 4);
-            if (qty > 0) {
-                int productId = (int) model.getValueAt(i, 0);
-                int currentStocks = (int) model.getValueAt(i, 3);
-                double price = (double) model.getValueAt(i, 2);
-                double subtotal = qty * price;
+    List<OrderLine> lines = new ArrayList<>();
+
+    for (int i = 0; i < model.getRowCount(); i++) {
+        int qty = (int) model.getValueAt(i, 4);
+        if (qty > 0) {
+            int productId = (int) model.getValueAt(i, 0);
+            double price = (double) model.getValueAt(i, 2);
+            lines.add(new OrderLine(productId, qty, price));
+        }
+    }
 
-                // Update product stock
-                updateStmt.setInt(1, qty);
-                updateStmt.setInt(2, productId);
-                updateStmt.addBatch();
+    Order order = new Order(user.getId(), lines);
+    CompletableFuture<OrderService.OrderResult> placed = orderQueue.submit(order);
+    if (placed.isCompletedExceptionally()) {
+        // Refused up front (queue full): keep the selection so the cashier can simply retry
+        JOptionPane.showMessageDialog(this, placed.exceptionNow().getMessage(),
+            "Order Not Placed", JOptionPane.WARNING_MESSAGE);
+        return false;
+    }
 
-                // Record individual sale with customer ID
-                salesStmt.setInt(1, productId);
-                salesStmt.setInt(2, qty);
-                salesStmt.setDate(3, today);
-                salesStmt.setInt(4, user.getId());
-                salesStmt.addBatch();
+    ordersInFlight++;
+    updateStatus(String.format("Order of ₱%.2f submitted", order.getTotal()));
+    clearSelections();
+    placed.whenComplete((result, error) ->
+        SwingUtilities.invokeLater(() -> orderFinished(order, change, result, error)));
+    return true;
+}
 
-                totalAmount += subtotal;
-            }
+    private void orderFinished(Order order, double change, OrderService.OrderResult result, Throwable error) {
+        ordersInFlight--;
+        if (error != null) {
+            updateStatus(String.format("Order of ₱%.2f failed", order.getTotal()));
+            JOptionPane.showMessageDialog(this,
+                String.format("Error processing the order of ₱%.2f: %s", order.getTotal(), error.getMessage()),
+                "Database Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
-
-        updateStmt.executeBatch();
-        salesStmt.executeBatch();
-
-        updateStmt.close();
-        salesStmt.close();
-
-        // Handle total sales
-        PreparedStatement checkTotalStmt = conn.prepareStatement(checkTotalSalesSQL);
-        checkTotalStmt.setDate(1, today);
-        ResultSet rs = checkTotalStmt.executeQuery();
-
-        if (rs.next()) {
-            PreparedStatement updateTotalStmt = conn.prepareStatement(updateTotalSalesSQL);
-            updateTotalStmt.setDouble(1, totalAmount);
-            updateTotalStmt.setDate(2, today);
-            updateTotalStmt.executeUpdate();
-            updateTotalStmt.close();
-        } else {
-            PreparedStatement insertTotalStmt = conn.prepareStatement(insertTotalSalesSQL);
-            insertTotalStmt.setDate(1, today);
-            insertTotalStmt.setDouble(2, totalAmount);
-            insertTotalStmt.executeUpdate();
-            insertTotalStmt.close();
+        if (!result.success) {
+            updateStatus(String.format("Order of ₱%.2f was not placed", order.getTotal()));
+            StringBuilder message = new StringBuilder("Some items could not be ordered:\n");
+            for (StockReservationService.LineFailure failure : result.failures) {
+                message.append("\n").append(productName(failure.productId)).append(": ")
+                       .append(failure.reason).append(" (requested ").append(failure.requested);
+                if (failure.available >= 0) {
+                    message.append(", available ").append(failure.available);
+                }
+                message.append(")");
+            }
+            showCurrentStock(order);
+            JOptionPane.showMessageDialog(this, message.toString(),
+                "Stock Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
-        checkTotalStmt.close();
-        conn.commit();
+        showCurrentStock(order);
+        updateStatus(String.format("Order of ₱%.2f placed successfully. Change: ₱%.2f", result.total, change));
+    }
 
-        // Refresh product table to show updated stocks
-        refreshProductTable();
-        return true;
+    private void updateStatus(String message) {
+        statusLabel.setText(ordersInFlight > 0 ? message + " (" + ordersInFlight + " still processing)" : message);
+    }
 
-    } catch (SQLException e) {
-        if (conn != null) {
-            try {
-                conn.rollback();
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
+    // Closing would drop orders still waiting in the queue
+    private boolean noOrdersInFlight() {
+        if (ordersInFlight == 0) {
+            return true;
         }
-        JOptionPane.showMessageDialog(this, 
-            "Error processing order: " + e.getMessage(),
-            "Database Error", JOptionPane.ERROR_MESSAGE);
+        JOptionPane.showMessageDialog(this,
+            ordersInFlight + " order(s) are still being placed. Please wait a moment.",
+            "Orders Processing", JOptionPane.INFORMATION_MESSAGE);
         return false;
-    } finally {
-        if (conn != null) {
-            try {
-                conn.setAutoCommit(true);
-                conn.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    }
+
+    private String productName(int productId) {
+        DefaultTableModel model = (DefaultTableModel) productTable.getModel();
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if ((int) model.getValueAt(i, 0) == productId) {
+                return (String) model.getValueAt(i, 1);
             }
         }
+        return "Product #" + productId;
     }
-}
 
-
-
-    private void refreshProductTable() {
+    /**
+     * Applies changed products to their rows only: stock, name and price are
+     * updated in place, sold-out products disappear unless a quantity is
+     * entered for them, and products back in stock are inserted in id order.
+     */
+    private void applyProductChanges(List<DBService.ProductInfo> changed) {
         DefaultTableModel model = (DefaultTableModel) productTable.getModel();
-        model.setRowCount(0); // Clear existing data
-        
+        for (DBService.ProductInfo product : changed) {
+            int row = rowOf(product.id);
+            if (row >= 0) {
+                if (product.stock <= 0 && (int) model.getValueAt(row, 4) == 0) {
+                    model.removeRow(row);
+                    continue;
+                }
+                setIfChanged(model, product.name, row, 1);
+                setIfChanged(model, product.price, row, 2);
+                setIfChanged(model, product.stock, row, 3);
+            } else if (product.stock > 0) {
+                int insertAt = 0;
+                while (insertAt < model.getRowCount() && (int) model.getValueAt(insertAt, 0) < product.id) {
+                    insertAt++;
+                }
+                model.insertRow(insertAt, new Object[]{product.id, product.name, product.price, product.stock, 0});
+            }
+        }
+        if (searchMatches != null) {
+            applySearch(); // renamed and newly listed products may now (not) match
+        }
+    }
+
+    // After our own order: show what the catalog now holds for its products
+    private void showCurrentStock(Order order) {
+        List<DBService.ProductInfo> products = new ArrayList<>();
         try {
-            String query = "SELECT id, name, price, stocks FROM products WHERE stocks > 0";
-            ResultSet rs = dbService.executeQuery(query);
-            
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getDouble("price"),
-                    rs.getInt("stocks"),
-                    0
-                });
+            ProductCatalog catalog = ProductCatalog.getInstance();
+            for (OrderLine line : order.getLines()) {
+                DBService.ProductInfo product = catalog.get(line.getProductId());
+                // A product that is gone reads as sold out
+                products.add(product != null ? product
+                        : new DBService.ProductInfo(line.getProductId(), productName(line.getProductId()), line.getUnitPrice(), 0));
             }
         } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, 
+            JOptionPane.showMessageDialog(this,
                 "Failed to refresh products: " + e.getMessage(),
                 "Database Error", JOptionPane.ERROR_MESSAGE);
         }
+        applyProductChanges(products);
+    }
+
+    private int rowOf(int productId) {
+        DefaultTableModel model = (DefaultTableModel) productTable.getModel();
+        for (int i = 0; i < model.getRowCount(); i++) {
+            if ((int) model.getValueAt(i, 0) == productId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void setIfChanged(DefaultTableModel model, Object value, int row, int column) {
+        if (!value.equals(model.getValueAt(row, column))) {
+            model.setValueAt(value, row, column);
+        }
     }
 
     // Helper class to store order items
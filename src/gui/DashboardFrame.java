@@ -1,23 +1,49 @@
 package gui;
 
+import dbconnection.DBConfig;
 import models.User;
+import services.AccountImportService;
+import services.BackupService;
 import services.DBService;
+import services.InventoryService;
+import services.ProductChangeFeed;
+import services.QueryMetrics;
+import services.QueryPlanReport;
+import services.SalesRollupService;
+import services.StockReceivingService;
+import services.TableQuery;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.sql.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class DashboardFrame extends JFrame {
     private final User user;
     private final DBService dbService;
+    private final SalesRollupService rollupService;
     private JTabbedPane tabbedPane;
+    private final ExecutorService tabLoader = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Component, String> pendingTabs = new HashMap<>();
+    private Timer metricsRefresh;
+    private Consumer<List<DBService.ProductInfo>> productChanges;
 
     public DashboardFrame(User user) {
         this.user = user;
 
         try {
             this.dbService = new DBService();
+            this.rollupService = new SalesRollupService(dbService);
 
             setTitle("Dashboard - " + user.getUsername() + " (" + user.getRole() + ")");
             setSize(800, 600);
@@ -38,17 +64,24 @@ public class DashboardFrame extends JFrame {
     private void initUI() {
         tabbedPane = new JTabbedPane();
 
-        tabbedPane.addTab("Products", createTablePanel("products"));
-        tabbedPane.addTab("Suppliers", createTablePanel("suppliers"));
+        addLazyTableTab("Products", "products");
+        addLazyTableTab("Suppliers", "suppliers");
 
         if ("1".equals(user.getRole())) {
-            tabbedPane.addTab("Users", createTablePanel("users"));
-            tabbedPane.addTab("Sales", createTablePanel("sales"));
-            tabbedPane.addTab("Customers", createTablePanel("customers"));
-            tabbedPane.addTab("Total Sales", createTablePanel("totalsales"));
+            addLazyTableTab("Users", "users");
+            addLazyTableTab("Sales", "sales");
+            addLazyTableTab("Customers", "customers");
+            // Merged view of the per-day shard rows; read-only
+            addLazyTableTab("Total Sales", "totalsales_daily");
+            tabbedPane.addTab("Reports", createReportsPanel());
             tabbedPane.addTab("Admin Controls", createAdminControlsPanel());
+            tabbedPane.addTab("Performance", createPerformancePanel());
         }
 
+        // Table tabs load the first time they are selected
+        tabbedPane.addChangeListener(e -> loadSelectedTab());
+        loadSelectedTab();
+
         add(tabbedPane);
 
         JButton logoutBtn = new JButton("Logout");
@@ -62,50 +95,174 @@ public class DashboardFrame extends JFrame {
         add(bottomPanel, BorderLayout.SOUTH);
     }
 
+    @Override
+    public void dispose() {
+        tabLoader.shutdownNow();
+        if (metricsRefresh != null) {
+            metricsRefresh.stop();
+        }
+        if (productChanges != null) {
+            ProductChangeFeed.getInstance().unsubscribe(productChanges);
+        }
+        super.dispose();
+    }
+
     private boolean canModifyTable(String tableName) {
+        if ("totalsales_daily".equals(tableName)) {
+            return false;
+        }
         return "1".equals(user.getRole()) ||
                 ("Staff".equals(user.getRole()) && ("products".equals(tableName) || "suppliers".equals(tableName)));
     }
 
-    private JPanel createTablePanel(String tableName) {
+    private void addLazyTableTab(String title, String tableName) {
         JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel("Loading " + title.toLowerCase() + "...", SwingConstants.CENTER), BorderLayout.CENTER);
+        pendingTabs.put(panel, tableName);
+        tabbedPane.addTab(title, panel);
+    }
 
-        try {
-            ResultSet rs = dbService.getTableData(tableName);
-            JTable table = new JTable(buildTableModel(rs));
-            JScrollPane scrollPane = new JScrollPane(table);
-            panel.add(scrollPane, BorderLayout.CENTER);
-
-            if ("products".equals(tableName) || "sales".equals(tableName)) {
-                JButton refreshBtn = new JButton("Refresh");
-                refreshBtn.addActionListener(e -> refreshTable(tableName, table));
-                JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-                topPanel.add(refreshBtn);
-                panel.add(topPanel, BorderLayout.NORTH);
+    private void loadSelectedTab() {
+        Component selected = tabbedPane.getSelectedComponent();
+        String tableName = pendingTabs.remove(selected);
+        if (tableName == null) {
+            return; // not a table tab, or already loading/loaded
+        }
+        JPanel panel = (JPanel) selected;
+
+        // Each tab loads on its own virtual thread, so tabs opened in quick
+        // succession fetch in parallel while the EDT stays responsive.
+        tabLoader.submit(() -> {
+            try {
+                PagedTableModel model = PagedTableModel.open(dbService, tabLoader, tableName);
+                SwingUtilities.invokeLater(() -> populateTablePanel(panel, tableName, model));
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> {
+                    // Allow another attempt the next time the tab is selected
+                    pendingTabs.put(panel, tableName);
+                    handleTableLoadError(e);
+                });
             }
+        });
+    }
 
-            if (canModifyTable(tableName)) {
-                addTableActionButtons(panel, tableName, table);
+    private void populateTablePanel(JPanel panel, String tableName, PagedTableModel model) {
+        panel.removeAll();
+
+        JTable table = new JTable(model);
+        JScrollPane scrollPane = new JScrollPane(table);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        // Clicking a header sorts by that column on the server; clicking again flips the order
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewColumn = table.columnAtPoint(e.getPoint());
+                if (viewColumn < 0) {
+                    return;
+                }
+                String column = model.getColumnKey(table.convertColumnIndexToModel(viewColumn));
+                TableQuery query = model.getQuery();
+                boolean ascending = !column.equalsIgnoreCase(query.getSortColumn()) || !query.isAscending();
+                applyQuery(table, model, query.withSort(column, ascending));
             }
+        });
 
-        } catch (SQLException e) {
-            handleTableLoadError(e);
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(createFilterPanel(table, model), BorderLayout.CENTER);
+
+        if ("products".equals(tableName) || "sales".equals(tableName)) {
+            JButton refreshBtn = new JButton("Refresh");
+            refreshBtn.addActionListener(e -> refreshTable(tableName, table));
+            JPanel refreshPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            refreshPanel.add(refreshBtn);
+            topPanel.add(refreshPanel, BorderLayout.WEST);
         }
+        panel.add(topPanel, BorderLayout.NORTH);
 
-        return panel;
+        if (canModifyTable(tableName)) {
+            addTableActionButtons(panel, tableName, table);
+        }
+
+        if ("products".equals(tableName)) {
+            // Stock sold or received on other terminals shows up in the loaded rows without a reload
+            productChanges = changed -> SwingUtilities.invokeLater(() -> {
+                PagedTableModel current = (PagedTableModel) table.getModel();
+                for (DBService.ProductInfo product : changed) {
+                    Map<String, Object> values = new HashMap<>();
+                    values.put("name", product.name);
+                    values.put("price", product.price);
+                    values.put("stocks", product.stock);
+                    current.updateRow(product.id, values);
+                }
+            });
+            ProductChangeFeed.getInstance().subscribe(productChanges);
+        }
+
+        panel.revalidate();
+        panel.repaint();
     }
 
-    private void refreshTable(String tableName, JTable table) {
+    /** One text field per column; Enter or Filter pushes the values down as a WHERE clause. */
+    private JPanel createFilterPanel(JTable table, PagedTableModel model) {
+        JPanel fieldPanel = new JPanel(new GridLayout(0, 6, 4, 2));
+        Map<String, JTextField> fields = new LinkedHashMap<>();
+
+        for (int i = 0; i < model.getColumnCount(); i++) {
+            JTextField field = new JTextField(6);
+            field.setToolTipText("Filter " + model.getColumnKey(i) + " (text matches as a prefix)");
+            fields.put(model.getColumnKey(i), field);
+            fieldPanel.add(new JLabel(model.getColumnKey(i) + ":", SwingConstants.RIGHT));
+            fieldPanel.add(field);
+        }
+
+        Runnable apply = () -> {
+            Map<String, String> filters = new LinkedHashMap<>();
+            fields.forEach((column, field) -> filters.put(column, field.getText()));
+            applyQuery(table, model, model.getQuery().withFilters(filters));
+        };
+        fields.values().forEach(field -> field.addActionListener(e -> apply.run()));
+
+        JButton filterBtn = new JButton("Filter");
+        filterBtn.addActionListener(e -> apply.run());
+        JButton clearBtn = new JButton("Clear");
+        clearBtn.addActionListener(e -> {
+            fields.values().forEach(field -> field.setText(""));
+            apply.run();
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(filterBtn);
+        buttonPanel.add(clearBtn);
+
+        JPanel filterPanel = new JPanel(new BorderLayout());
+        filterPanel.add(fieldPanel, BorderLayout.CENTER);
+        filterPanel.add(buttonPanel, BorderLayout.SOUTH);
+        return filterPanel;
+    }
+
+    private void applyQuery(JTable table, PagedTableModel model, TableQuery query) {
         try {
-            ResultSet rs = dbService.getTableData(tableName);
-            DefaultTableModel model = buildTableModel(rs);
-            table.setModel(model);
+            dbService.validateQuery(query);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Filter Error", JOptionPane.ERROR_MESSAGE);
+            return;
         } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this,
-                    "Error refreshing table: " + ex.getMessage(),
-                    "Refresh Error",
-                    JOptionPane.ERROR_MESSAGE);
+            handleTableLoadError(ex);
+            return;
+        }
+        model.setQuery(query);
+
+        // Header labels are cached by the column model; refresh them for the sort marker
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            table.getColumnModel().getColumn(i)
+                    .setHeaderValue(model.getColumnName(table.convertColumnIndexToModel(i)));
         }
+        table.getTableHeader().repaint();
+    }
+
+    // Only the rows that changed are fetched; selection and scroll position stay put
+    private void refreshTable(String tableName, JTable table) {
+        ((PagedTableModel) table.getModel()).refreshChanges();
     }
 
     private void addTableActionButtons(JPanel panel, String tableName, JTable table) {
@@ -122,34 +279,34 @@ public class DashboardFrame extends JFrame {
         if ("products".equals(tableName)) {
             JButton addStockBtn = new JButton("Add Stock");
             addStockBtn.addActionListener(e -> {
-                int selectedRow = table.getSelectedRow();
-                if (selectedRow == -1) {
-                    JOptionPane.showMessageDialog(this, "Select a product to add stock.");
+                Object[] selected = selectedRow(table, "Select a product to add stock.");
+                if (selected == null) {
                     return;
                 }
 
-                int id = (int) table.getValueAt(selectedRow, 0);
-                int currentStock = (int) table.getValueAt(selectedRow, 3); // column index 3 = stocks
+                int id = (int) selected[0];
 
                 String input = JOptionPane.showInputDialog(this, "Enter stock quantity to add:");
                 if (input != null && !input.trim().isEmpty()) {
                     try {
-                        int addQty = Integer.parseInt(input);
-                        int newStock = currentStock + addQty;
-
-                        String sql = "UPDATE products SET stocks=? WHERE id=?";
-                        PreparedStatement stmt = dbService.getConnection().prepareStatement(sql);
-                        stmt.setInt(1, newStock);
-                        stmt.setInt(2, id);
-                        stmt.executeUpdate();
-
-                        // Refresh the table after update
-                        refreshTable(tableName, table);
-                        JOptionPane.showMessageDialog(this, "Stock updated. New stock: " + newStock);
+                        int addQty = Integer.parseInt(input.trim());
+                        if (addQty <= 0) {
+                            JOptionPane.showMessageDialog(this, "Enter a quantity greater than zero.");
+                            return;
+                        }
+                        // Applied as a delta, so adjustments from other terminals aren't overwritten
+                        InventoryService.getInstance().adjust(id, addQty, InventoryService.RECEIVING)
+                                .whenComplete((ignored, ex) -> SwingUtilities.invokeLater(() -> {
+                                    if (ex != null) {
+                                        JOptionPane.showMessageDialog(this, "Database error: " + ex.getMessage());
+                                    } else {
+                                        // Refresh the table after update
+                                        refreshTable(tableName, table);
+                                        JOptionPane.showMessageDialog(this, "Stock updated. Added " + addQty + ".");
+                                    }
+                                }));
                     } catch (NumberFormatException nfe) {
                         JOptionPane.showMessageDialog(this, "Invalid number format.");
-                    } catch (SQLException ex) {
-                        JOptionPane.showMessageDialog(this, "Database error: " + ex.getMessage());
                     }
                 }
             });
@@ -170,56 +327,411 @@ public class DashboardFrame extends JFrame {
                 JOptionPane.ERROR_MESSAGE);
     }
 
-    private DefaultTableModel buildTableModel(ResultSet rs) throws SQLException {
-        ResultSetMetaData metaData = rs.getMetaData();
-        int columnCount = metaData.getColumnCount();
+    private JPanel createAdminControlsPanel() {
+        JPanel panel = new JPanel(new GridLayout(0, 1, 10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JButton backupBtn = new JButton("Backup Database");
+        backupBtn.addActionListener(e -> {
+            backupBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                boolean ok = dbService.backupDatabase();
+                SwingUtilities.invokeLater(() -> {
+                    backupBtn.setEnabled(true);
+                    if (ok) {
+                        JOptionPane.showMessageDialog(this, "Backup created successfully!");
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Backup failed!", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            });
+        });
 
-        String[] columnNames = new String[columnCount];
-        for (int i = 1; i <= columnCount; i++) {
-            columnNames[i - 1] = metaData.getColumnName(i);
-        }
+        JButton restoreBtn = new JButton("Restore Database");
+        restoreBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser(DBConfig.load().getString("backup.dir", "backups"));
+            chooser.setDialogTitle("Choose a backup folder");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Replace ALL data with the backup in " + chooser.getSelectedFile().getName() + "?",
+                    "Restore Database", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
+            }
+            java.nio.file.Path dir = chooser.getSelectedFile().toPath();
+            restoreBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    new BackupService(dbService).restore(dir);
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Database restored. Reopen tabs to see the restored data."));
+                } catch (Exception ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Restore failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> restoreBtn.setEnabled(true));
+                }
+            });
+        });
 
-        Object[][] data = {};
-        DefaultTableModel model = new DefaultTableModel(data, columnNames) {
-            public boolean isCellEditable(int row, int column) {
-                return false;
+        JButton rebuildRollupsBtn = new JButton("Rebuild Sales Rollups");
+        rebuildRollupsBtn.addActionListener(e -> {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Recompute the report rollups from the full sales history?\n" +
+                    "Run this while no orders are being taken.",
+                    "Rebuild Rollups", JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) {
+                return;
             }
-        };
+            rebuildRollupsBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    long rows = rollupService.rebuild(Runtime.getRuntime().availableProcessors(), 50000);
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Rollups rebuilt from " + rows + " sales rows."));
+                } catch (SQLException ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Rebuild failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> rebuildRollupsBtn.setEnabled(true));
+                }
+            });
+        });
 
-        while (rs.next()) {
-            Object[] row = new Object[columnCount];
-            for (int i = 1; i <= columnCount; i++) {
-                row[i - 1] = rs.getObject(i);
+        JButton importAccountsBtn = new JButton("Import Accounts (CSV)");
+        importAccountsBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("CSV with columns username, password, address, cellNo, role");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
-            model.addRow(row);
+            java.nio.file.Path file = chooser.getSelectedFile().toPath();
+            importAccountsBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    AccountImportService.ImportReport report = new AccountImportService(dbService).importCsv(file);
+                    SwingUtilities.invokeLater(() -> showImportReport(report));
+                } catch (Exception ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Import failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> importAccountsBtn.setEnabled(true));
+                }
+            });
+        });
+
+        panel.add(backupBtn);
+        panel.add(restoreBtn);
+        panel.add(rebuildRollupsBtn);
+        panel.add(importAccountsBtn);
+        panel.add(createReceiveStockButton());
+        panel.add(createInventoryAuditButton());
+        panel.add(createExplainButton());
+        return panel;
+    }
+
+    /** Applies a delivery file of productId,quantity lines, with a progress bar while it runs. */
+    private JButton createReceiveStockButton() {
+        JButton receiveBtn = new JButton("Receive Stock (CSV)");
+        receiveBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Delivery file with productId,quantity lines");
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            java.nio.file.Path file = chooser.getSelectedFile().toPath();
+
+            JProgressBar progressBar = new JProgressBar(0, 1000);
+            progressBar.setStringPainted(true);
+            JDialog progressDialog = new JDialog(this, "Receiving Stock", false);
+            progressDialog.add(progressBar);
+            progressDialog.setSize(350, 80);
+            progressDialog.setLocationRelativeTo(this);
+            progressDialog.setVisible(true);
+            receiveBtn.setEnabled(false);
+
+            tabLoader.submit(() -> {
+                try {
+                    StockReceivingService.ReceivingReport report = new StockReceivingService(dbService).receive(file,
+                            (bytesRead, totalBytes, lines) -> SwingUtilities.invokeLater(() -> {
+                                progressBar.setValue(totalBytes == 0 ? 1000 : (int) (bytesRead * 1000 / totalBytes));
+                                progressBar.setString(lines + " lines");
+                            }));
+                    SwingUtilities.invokeLater(() -> showReceivingReport(report));
+                } catch (Exception ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Receiving failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> {
+                        progressDialog.dispose();
+                        receiveBtn.setEnabled(true);
+                    });
+                }
+            });
+        });
+        return receiveBtn;
+    }
+
+    /** Folds the journal into a new snapshot, then replays what's left against the products table. */
+    private JButton createInventoryAuditButton() {
+        JButton auditBtn = new JButton("Snapshot & Audit Inventory");
+        auditBtn.addActionListener(e -> {
+            auditBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    InventoryService inventory = InventoryService.getInstance();
+                    inventory.snapshot();
+                    InventoryService.AuditReport report = inventory.audit(Runtime.getRuntime().availableProcessors());
+                    SwingUtilities.invokeLater(() -> showAuditReport(report));
+                } catch (SQLException ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Audit failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> auditBtn.setEnabled(true));
+                }
+            });
+        });
+        return auditBtn;
+    }
+
+    /** EXPLAIN plans of the hot queries, to confirm they use their indexes. */
+    private JButton createExplainButton() {
+        JButton explainBtn = new JButton("Explain Query Plans");
+        explainBtn.addActionListener(e -> {
+            explainBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    List<QueryPlanReport.Plan> plans = new QueryPlanReport(dbService).explainAll();
+                    SwingUtilities.invokeLater(() -> showQueryPlans(plans));
+                } catch (SQLException ex) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                            "Could not explain queries: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+                } finally {
+                    SwingUtilities.invokeLater(() -> explainBtn.setEnabled(true));
+                }
+            });
+        });
+        return explainBtn;
+    }
+
+    private void showQueryPlans(List<QueryPlanReport.Plan> plans) {
+        int suspect = 0;
+        StringBuilder text = new StringBuilder();
+        for (QueryPlanReport.Plan plan : plans) {
+            if (plan.isSuspect()) {
+                suspect++;
+            }
+            text.append(plan).append('\n');
+        }
+        JTextArea area = new JTextArea(text.toString(), 25, 90);
+        area.setEditable(false);
+        area.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        area.setCaretPosition(0);
+        JOptionPane.showMessageDialog(this,
+                new Object[]{suspect == 0 ? "No unexpected full table scans."
+                        : suspect + " queries scan a whole table; check that the migrations have run.",
+                        new JScrollPane(area)},
+                "Query Plans", suspect == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void showAuditReport(InventoryService.AuditReport report) {
+        if (report.drift.isEmpty()) {
+            JOptionPane.showMessageDialog(this,
+                    "All " + report.productsChecked + " products match the inventory journal.");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (InventoryService.Drift drift : report.drift) {
+            text.append(drift).append('\n');
         }
+        JTextArea area = new JTextArea(text.toString(), 15, 50);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this,
+                new Object[]{report.drift.size() + " of " + report.productsChecked
+                        + " products differ from the journal (run again to rule out orders in flight):",
+                        new JScrollPane(area)},
+                "Inventory Audit", JOptionPane.WARNING_MESSAGE);
+    }
 
-        return model;
+    private void showReceivingReport(StockReceivingService.ReceivingReport report) {
+        String summary = report.unitsReceived + " units received for " + report.productsUpdated + " products";
+        if (report.failure != null) {
+            summary = "Receiving stopped: " + report.failure + "\nLines 1-" + report.linesDone
+                    + " are booked; receive the rest of the file starting at line " + (report.linesDone + 1)
+                    + ".\n" + summary;
+        }
+        int messageType = report.failure != null ? JOptionPane.ERROR_MESSAGE : JOptionPane.WARNING_MESSAGE;
+        if (report.rejections.isEmpty()) {
+            JOptionPane.showMessageDialog(this, summary + ".", "Receive Stock",
+                    report.failure != null ? messageType : JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (StockReceivingService.Rejection rejection : report.rejections) {
+            text.append(rejection).append('\n');
+        }
+        JTextArea area = new JTextArea(text.toString(), 15, 50);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this,
+                new Object[]{summary + ", " + report.rejections.size() + " lines rejected:", new JScrollPane(area)},
+                "Receive Stock", messageType);
     }
 
-    private JPanel createAdminControlsPanel() {
-        JPanel panel = new JPanel(new GridLayout(3, 1, 10, 10));
-        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+    private void showImportReport(AccountImportService.ImportReport report) {
+        if (report.rejections.isEmpty()) {
+            JOptionPane.showMessageDialog(this, report.imported + " accounts imported.");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (AccountImportService.Rejection rejection : report.rejections) {
+            text.append(rejection).append('\n');
+        }
+        JTextArea area = new JTextArea(text.toString(), 15, 50);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this,
+                new Object[]{report.imported + " accounts imported, " + report.rejections.size() + " rejected:",
+                        new JScrollPane(area)},
+                "Import Accounts", JOptionPane.WARNING_MESSAGE);
+    }
 
-        JButton backupBtn = new JButton("Backup Database");
-        backupBtn.addActionListener(e -> {
-            if (dbService.backupDatabase()) {
-                JOptionPane.showMessageDialog(this, "Backup created successfully!");
-            } else {
-                JOptionPane.showMessageDialog(this, "Backup failed!", "Error", JOptionPane.ERROR_MESSAGE);
+    /** Sales reports answered from the daily rollups rather than the sales table. */
+    private JPanel createReportsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        String[] reports = {"Revenue by Product", "Sales by Customer", "Monthly Trend"};
+        JComboBox<String> reportBox = new JComboBox<>(reports);
+        LocalDate today = LocalDate.now();
+        JTextField fromField = new JTextField(today.minusDays(30).toString(), 10);
+        JTextField toField = new JTextField(today.toString(), 10);
+        JButton runBtn = new JButton("Run");
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(reportBox);
+        controls.add(new JLabel("From:"));
+        controls.add(fromField);
+        controls.add(new JLabel("To:"));
+        controls.add(toField);
+        controls.add(runBtn);
+
+        JTable table = new JTable();
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        runBtn.addActionListener(e -> {
+            Date from;
+            Date to;
+            try {
+                from = Date.valueOf(fromField.getText().trim());
+                to = Date.valueOf(toField.getText().trim());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, "Dates must be in yyyy-mm-dd format.",
+                        "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            int report = reportBox.getSelectedIndex();
+            runBtn.setEnabled(false);
+            tabLoader.submit(() -> {
+                try {
+                    List<Object[]> rows;
+                    String[] columns;
+                    if (report == 0) {
+                        rows = rollupService.getRevenueByProduct(from, to);
+                        columns = new String[]{"Product ID", "Product", "Units", "Revenue"};
+                    } else if (report == 1) {
+                        rows = rollupService.getSalesByCustomer(from, to);
+                        columns = new String[]{"Customer ID", "Customer", "Units", "Revenue"};
+                    } else {
+                        rows = rollupService.getMonthlyTrend(from, to);
+                        columns = new String[]{"Month", "Units", "Revenue"};
+                    }
+                    DefaultTableModel model = new DefaultTableModel(rows.toArray(new Object[0][]), columns) {
+                        @Override
+                        public boolean isCellEditable(int row, int column) {
+                            return false;
+                        }
+                    };
+                    SwingUtilities.invokeLater(() -> table.setModel(model));
+                } catch (SQLException ex) {
+                    SwingUtilities.invokeLater(() -> handleTableLoadError(ex));
+                } finally {
+                    SwingUtilities.invokeLater(() -> runBtn.setEnabled(true));
+                }
+            });
         });
 
-        JButton restoreBtn = new JButton("Restore Database");
-        restoreBtn.addActionListener(e -> {
-            JOptionPane.showMessageDialog(this, "Restore functionality would be implemented here");
+        return panel;
+    }
+
+    /**
+     * Per-statement latency from {@link QueryMetrics}, refreshed every few
+     * seconds while the tab is on screen. The slowest total time is on top.
+     */
+    private JPanel createPerformancePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        String[] columns = {"Statement", "Calls", "Errors", "Error %", "Rows", "p50 (ms)", "p99 (ms)", "Max (ms)", "Total (ms)"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                if (column == 0) {
+                    return String.class;
+                }
+                return column <= 2 || column == 4 ? Long.class : Double.class;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(400);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+
+        Runnable refresh = () -> {
+            model.setRowCount(0);
+            for (QueryMetrics.Snapshot stats : QueryMetrics.getInstance().snapshot()) {
+                model.addRow(new Object[]{stats.template, stats.count, stats.errors,
+                        round(stats.getErrorRate() * 100), stats.rows,
+                        round(stats.p50Ms), round(stats.p99Ms), round(stats.maxMs), round(stats.totalMs)});
+            }
+        };
+        metricsRefresh = new Timer(5000, e -> {
+            if (panel.isShowing()) {
+                refresh.run();
+            }
+        });
+        metricsRefresh.start();
+        tabbedPane.addChangeListener(e -> {
+            if (tabbedPane.getSelectedComponent() == panel) {
+                refresh.run();
+            }
         });
 
-        panel.add(backupBtn);
-        panel.add(restoreBtn);
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refresh.run());
+        JButton resetBtn = new JButton("Reset");
+        resetBtn.addActionListener(e -> {
+            QueryMetrics.getInstance().reset();
+            refresh.run();
+        });
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(refreshBtn);
+        controls.add(resetBtn);
+        controls.add(new JLabel("Statements since start-up or the last reset; the slowest in total first."));
+
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
         return panel;
     }
 
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
     private void showAddDialog(String tableName) {
         if ("products".equals(tableName)) {
             JTextField name = new JTextField();
@@ -237,13 +749,11 @@ public class DashboardFrame extends JFrame {
             int res = JOptionPane.showConfirmDialog(this, fields, "Add Product", JOptionPane.OK_CANCEL_OPTION);
             if (res == JOptionPane.OK_OPTION) {
                 try {
-                    String sql = "INSERT INTO products (name, price, stocks, supplierId) VALUES (?, ?, ?, ?)";
-                    PreparedStatement stmt = dbService.getConnection().prepareStatement(sql);
-                    stmt.setString(1, name.getText());
-                    stmt.setDouble(2, Double.parseDouble(price.getText()));
-                    stmt.setInt(3, Integer.parseInt(stocks.getText()));
-                    stmt.setInt(4, Integer.parseInt(supplierId.getText()));
-                    stmt.executeUpdate();
+                    dbService.addProduct(
+                            name.getText(),
+                            Double.parseDouble(price.getText()),
+                            Integer.parseInt(stocks.getText()),
+                            Integer.parseInt(supplierId.getText()));
                     JOptionPane.showMessageDialog(this, "Product added.");
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
@@ -264,10 +774,7 @@ public class DashboardFrame extends JFrame {
             if (res == JOptionPane.OK_OPTION) {
                 try {
                     String sql = "INSERT INTO suppliers (name, contact) VALUES (?, ?)";
-                    PreparedStatement stmt = dbService.getConnection().prepareStatement(sql);
-                    stmt.setString(1, name.getText());
-                    stmt.setString(2, contact.getText());
-                    stmt.executeUpdate();
+                    dbService.executeUpdate(sql, name.getText(), contact.getText());
                     JOptionPane.showMessageDialog(this, "Supplier added.");
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
@@ -277,19 +784,19 @@ public class DashboardFrame extends JFrame {
     }
 
     private void showEditDialog(String tableName, JTable table) {
-        int row = table.getSelectedRow();
-        if (row == -1) {
-            JOptionPane.showMessageDialog(this, "Select a record to edit.");
+        Object[] selected = selectedRow(table, "Select a record to edit.");
+        if (selected == null) {
             return;
         }
 
-        int id = (int) table.getValueAt(row, 0);
+        int id = (int) selected[0];
 
         if ("products".equals(tableName)) {
-            JTextField name = new JTextField((String) table.getValueAt(row, 1));
-            JTextField price = new JTextField(table.getValueAt(row, 2).toString());
-            JTextField stocks = new JTextField(table.getValueAt(row, 3).toString());
-            JTextField supplierId = new JTextField(table.getValueAt(row, 4).toString());
+            JTextField name = new JTextField(text(selected[1]));
+            JTextField price = new JTextField(text(selected[2]));
+            String shownStocks = text(selected[3]);
+            JTextField stocks = new JTextField(shownStocks);
+            JTextField supplierId = new JTextField(text(selected[4]));
 
             Object[] fields = {
                     "Name:", name,
@@ -301,15 +808,21 @@ public class DashboardFrame extends JFrame {
             int res = JOptionPane.showConfirmDialog(this, fields, "Edit Product", JOptionPane.OK_CANCEL_OPTION);
             if (res == JOptionPane.OK_OPTION) {
                 try {
-                    String sql = "UPDATE products SET name=?, price=?, stocks=?, supplierId=? WHERE id=?";
-                    PreparedStatement stmt = dbService.getConnection().prepareStatement(sql);
-                    stmt.setString(1, name.getText());
-                    stmt.setDouble(2, Double.parseDouble(price.getText()));
-                    stmt.setInt(3, Integer.parseInt(stocks.getText()));
-                    stmt.setInt(4, Integer.parseInt(supplierId.getText()));
-                    stmt.setInt(5, id);
-                    stmt.executeUpdate();
-                    JOptionPane.showMessageDialog(this, "Product updated.");
+                    boolean updated;
+                    // The shown stock may be stale: only a value the user typed is applied as a correction
+                    if (stocks.getText().trim().equals(shownStocks)) {
+                        updated = dbService.updateProductDetails(id,
+                                name.getText(),
+                                Double.parseDouble(price.getText()),
+                                optionalInt(supplierId.getText()));
+                    } else {
+                        updated = dbService.updateProduct(id,
+                                name.getText(),
+                                Double.parseDouble(price.getText()),
+                                Integer.parseInt(stocks.getText().trim()),
+                                optionalInt(supplierId.getText()));
+                    }
+                    JOptionPane.showMessageDialog(this, updated ? "Product updated." : "The product no longer exists.");
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
                 }
@@ -317,8 +830,8 @@ public class DashboardFrame extends JFrame {
         }
 
         if ("suppliers".equals(tableName)) {
-            JTextField name = new JTextField((String) table.getValueAt(row, 1));
-            JTextField contact = new JTextField((String) table.getValueAt(row, 2));
+            JTextField name = new JTextField(text(selected[1]));
+            JTextField contact = new JTextField(text(selected[2]));
 
             Object[] fields = {
                     "Name:", name,
@@ -329,11 +842,7 @@ public class DashboardFrame extends JFrame {
             if (res == JOptionPane.OK_OPTION) {
                 try {
                     String sql = "UPDATE suppliers SET name=?, contact=? WHERE id=?";
-                    PreparedStatement stmt = dbService.getConnection().prepareStatement(sql);
-                    stmt.setString(1, name.getText());
-                    stmt.setString(2, contact.getText());
-                    stmt.setInt(3, id);
-                    stmt.executeUpdate();
+                    dbService.executeUpdate(sql, name.getText(), contact.getText(), id);
                     JOptionPane.showMessageDialog(this, "Supplier updated.");
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
@@ -343,22 +852,47 @@ public class DashboardFrame extends JFrame {
     }
 
     private void deleteRecord(String tableName, JTable table) {
-        int row = table.getSelectedRow();
-        if (row == -1) {
-            JOptionPane.showMessageDialog(this, "Select a record to delete.");
+        Object[] selected = selectedRow(table, "Select a record to delete.");
+        if (selected == null) {
             return;
         }
 
         int confirm = JOptionPane.showConfirmDialog(this, "Delete selected record?", "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            int id = (int) table.getValueAt(row, 0);
+            int id = (int) selected[0];
 
             if (dbService.deleteRecord(tableName, id)) {
-                ((DefaultTableModel) table.getModel()).removeRow(row);
+                refreshTable(tableName, table);
                 JOptionPane.showMessageDialog(this, "Record deleted.");
             } else {
                 JOptionPane.showMessageDialog(this, "Delete failed.");
             }
         }
     }
+
+    /**
+     * The selected row's values, or null after telling the user why not: nothing
+     * is selected, or the row's page isn't loaded (yet, or any more).
+     */
+    private Object[] selectedRow(JTable table, String noSelection) {
+        int row = table.getSelectedRow();
+        if (row == -1) {
+            JOptionPane.showMessageDialog(this, noSelection);
+            return null;
+        }
+        Object[] values = ((PagedTableModel) table.getModel()).getRow(table.convertRowIndexToModel(row));
+        if (values == null) {
+            JOptionPane.showMessageDialog(this, "That row is still loading. Please try again in a moment.");
+        }
+        return values;
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    // A blank field stands for NULL in nullable columns
+    private static Integer optionalInt(String text) {
+        return text.trim().isEmpty() ? null : Integer.valueOf(text.trim());
+    }
 }
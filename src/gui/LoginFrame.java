@@ -10,9 +10,12 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import models.User;
 import models.Customer;
+import services.AuthService;
 import services.UserService;
 
-/*public class LoginFrame extends JFrame {
+public class LoginFrame extends JFrame {
+    private final AuthService authService = AuthService.getInstance();
+
     public LoginFrame() {
         setTitle("Authentication System");
         setSize(350, 300);
@@ -82,8 +85,7 @@ import services.UserService;
 
         loginBtn.addActionListener(e -> {
             try {
-                UserService userService = new UserService();
-                User user = userService.authenticate(
+                User user = authService.authenticate(
                     userField.getText(), 
                     new String(passField.getPassword())
                 );
@@ -0,0 +1,404 @@
+package gui;
+
+import services.DBService;
+import services.TableChangeTracker;
+import services.TableQuery;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only table model that keeps only a window of a database table in memory.
+ * Filtering and sorting are done by the database through a {@link TableQuery}.
+ *
+ * Rows are fetched in fixed-size pages when the JTable first asks for them
+ * (i.e. when they scroll into view), using keyset pagination on the key column
+ * when rows are in key order and the previous page boundary is known, and an
+ * OFFSET query otherwise.
+ * Loaded pages are kept in a small LRU, and the next page is prefetched once
+ * the view reaches the second half of the current one.
+ * Cells of pages that are still loading read as null.
+ *
+ * {@link #refreshChanges} patches the model with only the rows that changed
+ * since the last load (see {@link TableChangeTracker}), firing row-level
+ * events so selection and scroll position survive; pages whose rows moved are
+ * dropped and fetched again when visible. It reloads instead while a filter or
+ * a sort other than ascending key is applied, or when too much changed.
+ *
+ * All methods must be called on the EDT; fetching happens on the given executor.
+ */
+public class PagedTableModel extends AbstractTableModel {
+    private static final Logger LOGGER = Logger.getLogger(PagedTableModel.class.getName());
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int DEFAULT_MAX_PAGES = 16;
+    private static final int MAX_DIFF_ROWS = 1000;
+
+    private final DBService dbService;
+    private final ExecutorService executor;
+    private final String[] columnNames;
+    private final int keyIndex;
+    private final int pageSize;
+    private final TableChangeTracker tracker;
+
+    private final LinkedHashMap<Integer, Object[][]> pages;
+    // Key of the last row of each page seen so far, so the next page can be read with "key > ?"
+    private final Map<Integer, Object> pageEndKeys = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private TableQuery query;
+    private int rowCount;
+    private int generation;
+    private int pagesEpoch; // bumped whenever rows move, so page loads in flight are dropped
+    private boolean diffInFlight;
+    private boolean diffAgain;
+
+    private PagedTableModel(DBService dbService, ExecutorService executor, TableQuery query,
+                            List<String> columns, TableChangeTracker tracker, int rowCount,
+                            int pageSize, int maxPages) {
+        this.dbService = dbService;
+        this.executor = executor;
+        this.tracker = tracker;
+        this.query = query;
+        this.columnNames = columns.toArray(new String[0]);
+        this.keyIndex = indexOfColumn(columns, query.getKeyColumn());
+        this.rowCount = rowCount;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /**
+     * Reads the column names and row count of a table. Does blocking I/O, so call
+     * it off the EDT and hand the model to the table afterwards.
+     */
+    public static PagedTableModel open(DBService dbService, ExecutorService executor, String tableName)
+            throws SQLException {
+        TableQuery query = new TableQuery(tableName, "id");
+        List<String> columns = dbService.getColumnNames(tableName);
+        TableChangeTracker tracker = new TableChangeTracker(dbService, tableName, query.getKeyColumn());
+        int count = tracker.start();
+        return new PagedTableModel(dbService, executor, query, columns, tracker, count,
+                DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    private static int indexOfColumn(List<String> columns, String name) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public String getTableName() {
+        return query.getTableName();
+    }
+
+    public TableQuery getQuery() {
+        return query;
+    }
+
+    /** Switches to a new filter/sort and reloads from the first page. */
+    public void setQuery(TableQuery query) {
+        this.query = query;
+        refresh();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        String name = columnNames[column];
+        if (query.getSortColumn() != null && name.equalsIgnoreCase(query.getSortColumn())) {
+            return name + (query.isAscending() ? " \u25B2" : " \u25BC");
+        }
+        return name;
+    }
+
+    /** The plain column name, without a sort marker. */
+    public String getColumnKey(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] values = getRow(row);
+        return values != null ? values[column] : null;
+    }
+
+    /** Returns the row if its page is loaded, otherwise schedules the page and returns null. */
+    public Object[] getRow(int row) {
+        int page = row / pageSize;
+        Object[][] rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = row - page * pageSize;
+        if (index >= pageSize / 2) {
+            // Scrolling is usually forward, so have the next window ready
+            requestPage(page + 1);
+        }
+        return index < rows.length ? rows[index] : null;
+    }
+
+    /** Re-counts the table and drops every loaded page; visible rows are fetched again. */
+    public void refresh() {
+        int refreshGeneration = ++generation;
+        TableQuery refreshQuery = query;
+        dropPagesFrom(0);
+        executor.submit(() -> {
+            try {
+                // Restarting the tracker here keeps it in step with what the model shows
+                int count = diffable(refreshQuery) ? tracker.start() : dbService.countRows(refreshQuery);
+                SwingUtilities.invokeLater(() -> {
+                    if (refreshGeneration == generation) {
+                        rowCount = count;
+                        fireTableDataChanged();
+                    }
+                });
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not refresh " + refreshQuery.getTableName(), e);
+            }
+        });
+    }
+
+    /**
+     * Applies the rows inserted, updated and deleted since the last load or
+     * diff, or reloads when that can't be done row by row.
+     */
+    public void refreshChanges() {
+        if (!diffable(query)) {
+            refresh();
+            return;
+        }
+        if (diffInFlight) {
+            diffAgain = true; // diffs must apply in the order the tracker produced them
+            return;
+        }
+        diffInFlight = true;
+        int requestGeneration = generation;
+        executor.submit(() -> {
+            try {
+                TableChangeTracker.Changes changes = tracker.poll(MAX_DIFF_ROWS);
+                SwingUtilities.invokeLater(() -> {
+                    diffInFlight = false;
+                    if (changes == null || requestGeneration != generation) {
+                        // Too much changed, or a reload raced us and the tracker must start over
+                        diffAgain = false;
+                        refresh();
+                        return;
+                    }
+                    applyChanges(changes);
+                    if (diffAgain) {
+                        diffAgain = false;
+                        refreshChanges();
+                    }
+                });
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> diffInFlight = false);
+                LOGGER.log(Level.WARNING, "Could not read changes of " + query.getTableName(), e);
+            }
+        });
+    }
+
+    private static boolean diffable(TableQuery query) {
+        return query.getFilters().isEmpty() && query.isSortedByKey() && query.isAscending();
+    }
+
+    private void applyChanges(TableChangeTracker.Changes changes) {
+        // Highest key first, so each drop keeps the page boundaries the next lookup needs
+        List<Long> deleted = new ArrayList<>(changes.deleted);
+        deleted.sort(Comparator.reverseOrder());
+        for (long key : deleted) {
+            if (rowCount == 0) {
+                break;
+            }
+            int row = locate(key);
+            dropPagesFrom(row / pageSize);
+            rowCount--;
+            fireTableRowsDeleted(row, row);
+        }
+
+        // The tail lists are the last rows of the table; walk them in step
+        List<Long> before = changes.tailBefore;
+        List<Long> after = changes.tailAfter;
+        if (!before.equals(after)) {
+            int row = Math.max(0, rowCount - before.size());
+            dropPagesFrom(row / pageSize);
+            int i = 0;
+            int j = 0;
+            while (i < before.size() || j < after.size()) {
+                long old = i < before.size() ? before.get(i) : Long.MAX_VALUE;
+                long now = j < after.size() ? after.get(j) : Long.MAX_VALUE;
+                if (old == now) {
+                    i++;
+                    j++;
+                    row++;
+                } else if (old < now) {
+                    int count = 0;
+                    while (i < before.size() && before.get(i) < now) {
+                        i++;
+                        count++;
+                    }
+                    rowCount -= count;
+                    fireTableRowsDeleted(row, row + count - 1);
+                } else {
+                    int first = row;
+                    while (j < after.size() && after.get(j) < old) {
+                        j++;
+                        row++;
+                    }
+                    rowCount += row - first;
+                    fireTableRowsInserted(first, row - 1);
+                }
+            }
+        }
+
+        for (Object[] fresh : changes.updated) {
+            replaceLoadedRow(fresh);
+        }
+    }
+
+    /** The row of a key: exact if its page is loaded, else the first row of the page that holds it. */
+    private int locate(long key) {
+        for (Map.Entry<Integer, Object[][]> page : pages.entrySet()) {
+            Object[][] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (sameKey(rows[i][keyIndex], key)) {
+                    return page.getKey() * pageSize + i;
+                }
+            }
+        }
+        int page = 0;
+        while (pageEndKeys.containsKey(page) && ((Number) pageEndKeys.get(page)).longValue() < key) {
+            page++;
+        }
+        return Math.min(page * pageSize, rowCount - 1);
+    }
+
+    private void replaceLoadedRow(Object[] fresh) {
+        for (Map.Entry<Integer, Object[][]> page : pages.entrySet()) {
+            Object[][] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (sameKey(rows[i][keyIndex], fresh[keyIndex])) {
+                    rows[i] = fresh;
+                    int row = page.getKey() * pageSize + i;
+                    fireTableRowsUpdated(row, row);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Forgets pages from this one on; rows there moved, so they are fetched again when shown. */
+    private void dropPagesFrom(int page) {
+        pages.keySet().removeIf(p -> p >= page);
+        pageEndKeys.keySet().removeIf(p -> p >= page);
+        loading.clear();
+        pagesEpoch++;
+    }
+
+    /**
+     * Overwrites the named columns of the row with this key, if its page is
+     * loaded. Returns false when the row isn't in memory; it will be read
+     * fresh when it scrolls into view.
+     */
+    public boolean updateRow(Object key, Map<String, Object> values) {
+        for (Map.Entry<Integer, Object[][]> page : pages.entrySet()) {
+            Object[][] rows = page.getValue();
+            for (int i = 0; i < rows.length; i++) {
+                if (!sameKey(rows[i][keyIndex], key)) {
+                    continue;
+                }
+                for (Map.Entry<String, Object> value : values.entrySet()) {
+                    int column = indexOfColumn(List.of(columnNames), value.getKey());
+                    if (columnNames[column].equalsIgnoreCase(value.getKey())) {
+                        rows[i][column] = value.getValue();
+                    }
+                }
+                int row = page.getKey() * pageSize + i;
+                fireTableRowsUpdated(row, row);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Drivers differ in the boxed type of integer keys
+    private static boolean sameKey(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).longValue() == ((Number) b).longValue();
+        }
+        return a != null && a.equals(b);
+    }
+
+    private void requestPage(int page) {
+        if (page < 0 || page * pageSize >= rowCount || pages.containsKey(page) || !loading.add(page)) {
+            return;
+        }
+        int requestEpoch = pagesEpoch;
+        TableQuery pageQuery = query;
+        Object afterKey = page == 0 ? null : pageEndKeys.get(page - 1);
+        boolean keyset = pageQuery.isSortedByKey() && (page == 0 || afterKey != null);
+
+        executor.submit(() -> {
+            try {
+                List<Object[]> rows = keyset
+                        ? dbService.fetchRowsAfter(pageQuery, afterKey, pageSize)
+                        : dbService.fetchRowsAt(pageQuery, page * pageSize, pageSize);
+                SwingUtilities.invokeLater(() -> pageLoaded(requestEpoch, page, rows));
+            } catch (SQLException e) {
+                // The page stays marked as loading so repaints don't hammer a failing
+                // database; the next refresh() clears it and tries again.
+                LOGGER.log(Level.WARNING, "Could not load rows of " + pageQuery.getTableName(), e);
+            }
+        });
+    }
+
+    private void pageLoaded(int requestEpoch, int page, List<Object[]> rows) {
+        if (requestEpoch != pagesEpoch) {
+            return; // a refresh or diff moved rows while this page was in flight
+        }
+        loading.remove(page);
+        pages.put(page, rows.toArray(new Object[0][]));
+        if (!rows.isEmpty()) {
+            pageEndKeys.put(page, rows.get(rows.size() - 1)[keyIndex]);
+        }
+
+        int first = page * pageSize;
+        int last = Math.min(rowCount, first + pageSize) - 1;
+        if (last >= first) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+}
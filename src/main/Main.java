@@ -1,7 +1,87 @@
+import dbconnection.DBConfig;
+import dbconnection.DBConnection;
 import gui.LoginFrame;
+import server.ApiServer;
+import services.DBService;
+import services.InventoryService;
+import services.PasswordHasher;
+import services.QueryPlanReport;
+import services.SalesRollupService;
+import services.UsernameRegistry;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--rebuild-rollups".equals(args[0])) {
+            rebuildRollups();
+            return;
+        }
+        if (args.length > 0 && "--inventory-snapshot".equals(args[0])) {
+            snapshotInventory();
+            return;
+        }
+        if (args.length == 3 && "--create-admin".equals(args[0])) {
+            createAdmin(args[1], args[2]);
+            return;
+        }
+        if (args.length > 0 && "--explain".equals(args[0])) {
+            explainQueries();
+            return;
+        }
+        if (args.length > 0 && "--server".equals(args[0])) {
+            runServer(args.length > 1 ? Integer.parseInt(args[1]) : DBConfig.load().getInt("server.port", 8080));
+            return;
+        }
+        UsernameRegistry.getInstance().warmUpAsync();
         new LoginFrame().setVisible(true);
     }
+
+    // Headless mode: the HTTP API of server.ApiServer until the process is stopped
+    private static void runServer(int port) throws Exception {
+        UsernameRegistry.getInstance().warmUpAsync();
+        ApiServer server = new ApiServer();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(5);
+            DBConnection.shutdown();
+        }, "api-server-shutdown"));
+        server.start(port);
+        System.out.println("Serving the store API on port " + server.getPort() + "; stop with Ctrl+C");
+    }
+
+    // Meant to be scheduled (cron, Task Scheduler) so audits only replay a short tail of the journal
+    private static void snapshotInventory() throws Exception {
+        InventoryService inventory = InventoryService.getInstance();
+        long snapshot = inventory.snapshot();
+        InventoryService.AuditReport report = inventory.audit(Runtime.getRuntime().availableProcessors());
+        System.out.println((snapshot < 0 ? "Journal unchanged since the last snapshot" : "Took inventory snapshot " + snapshot)
+                + "; " + report.drift.size() + " of " + report.productsChecked + " products differ from the journal");
+        for (InventoryService.Drift drift : report.drift) {
+            System.out.println("  " + drift);
+        }
+        DBConnection.shutdown();
+    }
+
+    // A new embedded or in-memory database starts without accounts; this makes the first admin
+    private static void createAdmin(String username, String password) throws Exception {
+        new DBService().executeUpdate("INSERT INTO users (username, password, role_id) VALUES (?, ?, ?)",
+                username, PasswordHasher.getInstance().hash(password), "1");
+        System.out.println("Created admin account " + username);
+        DBConnection.shutdown();
+    }
+
+    // Starting the pool applies any pending migrations first, so this also works as "migrate and check"
+    private static void explainQueries() throws Exception {
+        for (QueryPlanReport.Plan plan : new QueryPlanReport(new DBService()).explainAll()) {
+            System.out.println(plan);
+        }
+        DBConnection.shutdown();
+    }
+
+    private static void rebuildRollups() throws Exception {
+        long started = System.currentTimeMillis();
+        long rows = new SalesRollupService(new DBService())
+                .rebuild(Runtime.getRuntime().availableProcessors(), 50000);
+        System.out.println("Rebuilt sales rollups from " + rows + " sales rows in "
+                + (System.currentTimeMillis() - started) + " ms");
+        DBConnection.shutdown();
+    }
 }
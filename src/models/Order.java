@@ -0,0 +1,27 @@
+package models;
+
+import java.util.List;
+
+public class Order {
+    private final int customerId;
+    private final List<OrderLine> lines;
+    private final long submittedAt;
+
+    public Order(int customerId, List<OrderLine> lines) {
+        this.customerId = customerId;
+        this.lines = List.copyOf(lines);
+        this.submittedAt = System.currentTimeMillis();
+    }
+
+    public int getCustomerId() { return customerId; }
+    public List<OrderLine> getLines() { return lines; }
+    public long getSubmittedAt() { return submittedAt; }
+
+    public double getTotal() {
+        double total = 0;
+        for (OrderLine line : lines) {
+            total += line.getSubtotal();
+        }
+        return total;
+    }
+}
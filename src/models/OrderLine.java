@@ -0,0 +1,18 @@
+package models;
+
+public class OrderLine {
+    private final int productId;
+    private final int quantity;
+    private final double unitPrice;
+
+    public OrderLine(int productId, int quantity, double unitPrice) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+    }
+
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public double getUnitPrice() { return unitPrice; }
+    public double getSubtotal() { return quantity * unitPrice; }
+}
@@ -0,0 +1,474 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dbconnection.ConnectionPool;
+import dbconnection.DBConfig;
+import dbconnection.DBConnection;
+import models.Customer;
+import models.OrderLine;
+import models.User;
+import services.DBService;
+import services.OrderService;
+import services.ProductCatalog;
+import services.StockReservationService.LineFailure;
+import services.UserService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless JSON-over-HTTP API for the customer side of the store, started
+ * with {@code Main --server}. Every request runs on its own virtual thread;
+ * all of them share this process's connection pool, product catalog and
+ * login cache, exactly like the screens of one Swing terminal do.
+ *
+ * <pre>
+ * GET    /api/health                  pool and session counts
+ * POST   /api/sessions                {"username","password"} -> {"token","user"}
+ * DELETE /api/sessions                log out
+ * POST   /api/customers               {"username","password","address","cellNo"}
+ * GET    /api/products                in-stock products
+ * GET    /api/products/{id}
+ * POST   /api/orders                  {"lines":[{"productId","quantity"}]}  (customer)
+ * GET    /api/orders?next=&pageSize=  order history page, newest first      (customer)
+ * </pre>
+ *
+ * Calls that need a login take {@code Authorization: Bearer <token>}. Prices
+ * always come from the catalog, never from the client. Checkouts are admitted
+ * {@code server.checkoutConcurrency} at a time (default: the pool size) and
+ * the rest queue on their virtual threads for up to {@code server.checkoutWaitMs}
+ * before getting a 503, instead of all of them timing out on the pool.
+ */
+public class ApiServer {
+    private static final Logger LOGGER = Logger.getLogger(ApiServer.class.getName());
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final DBService dbService;
+    private final UserService userService;
+    private final OrderService orderService;
+    private final SessionStore sessions;
+    private final Semaphore checkouts;
+    private final long checkoutWaitMs;
+    private final int backlog;
+    private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "api-session-expiry");
+        t.setDaemon(true);
+        return t;
+    });
+    private HttpServer server;
+
+    public ApiServer() throws SQLException {
+        DBConfig config = DBConfig.load();
+        this.dbService = new DBService();
+        this.userService = new UserService();
+        this.orderService = new OrderService(dbService);
+        this.sessions = new SessionStore(config.getLong("server.sessionTtlMs", 1800000));
+        int concurrency = config.getInt("server.checkoutConcurrency", 0);
+        this.checkouts = new Semaphore(concurrency > 0 ? concurrency : DBConnection.getPool().getMaxSize(), true);
+        this.checkoutWaitMs = config.getLong("server.checkoutWaitMs", 10000);
+        this.backlog = config.getInt("server.backlog", 1024);
+    }
+
+    public synchronized void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), backlog);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(requests);
+        server.start();
+        housekeeper.scheduleWithFixedDelay(sessions::expire, 1, 1, TimeUnit.MINUTES);
+        LOGGER.info("API server listening on port " + getPort());
+    }
+
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /** Stops accepting requests and gives those in flight up to {@code graceSeconds} to finish. */
+    public synchronized void stop(int graceSeconds) {
+        if (server != null) {
+            server.stop(graceSeconds);
+            server = null;
+        }
+        housekeeper.shutdownNow();
+        requests.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        Object body;
+        try {
+            Reply reply = route(exchange, exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+            status = reply.status;
+            body = reply.body;
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+            if (status == 503) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (SQLTransientConnectionException e) {
+            status = 503;
+            body = error("The database is busy; retry shortly");
+            exchange.getResponseHeaders().set("Retry-After", "1");
+        } catch (Throwable e) {
+            // Anything else, Errors included, still gets an answer so the exchange is closed
+            LOGGER.log(Level.WARNING, exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed", e);
+            status = 500;
+            body = error("Internal error");
+        }
+
+        try (exchange) {
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private Reply route(HttpExchange exchange, String method, String path) throws IOException, SQLException {
+        switch (path) {
+            case "/api/health":
+                requireMethod(method, "GET");
+                return health();
+            case "/api/sessions":
+                if ("POST".equals(method)) {
+                    return login(readObject(exchange));
+                }
+                requireMethod(method, "DELETE");
+                sessions.close(bearerToken(exchange));
+                return new Reply(204, null);
+            case "/api/customers":
+                requireMethod(method, "POST");
+                return register(readObject(exchange));
+            case "/api/products":
+                requireMethod(method, "GET");
+                return products();
+            case "/api/orders":
+                if ("POST".equals(method)) {
+                    return placeOrder(requireCustomer(exchange), readObject(exchange));
+                }
+                requireMethod(method, "GET");
+                return orderHistory(requireCustomer(exchange), queryParams(exchange));
+            default:
+                if (path.startsWith("/api/products/")) {
+                    requireMethod(method, "GET");
+                    return product(parseId(path.substring("/api/products/".length())));
+                }
+                throw new ApiException(404, "No such endpoint: " + path);
+        }
+    }
+
+    private Reply health() throws SQLException {
+        ConnectionPool pool = DBConnection.getPool();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "ok");
+        body.put("poolActive", pool.getActiveCount());
+        body.put("poolIdle", pool.getIdleCount());
+        body.put("poolMax", pool.getMaxSize());
+        body.put("checkoutsQueued", checkouts.getQueueLength());
+        body.put("sessions", sessions.size());
+        return new Reply(200, body);
+    }
+
+    private Reply login(Map<String, Object> request) throws SQLException {
+        User user = userService.authenticate(string(request, "username"), string(request, "password"));
+        if (user == null) {
+            throw new ApiException(401, "Invalid username or password");
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("token", sessions.open(user));
+        body.put("user", userJson(user));
+        return new Reply(201, body);
+    }
+
+    private Reply register(Map<String, Object> request) {
+        Customer customer = new Customer();
+        customer.setUsername(string(request, "username"));
+        customer.setPassword(string(request, "password"));
+        customer.setAddress(optionalString(request, "address"));
+        customer.setCellNo(optionalString(request, "cellNo"));
+        if (customer.getUsername().isBlank() || customer.getPassword().isEmpty()) {
+            throw new IllegalArgumentException("username and password must not be empty");
+        }
+        if (!userService.registerCustomer(customer)) {
+            throw new ApiException(409, "Username is already taken");
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("username", customer.getUsername());
+        return new Reply(201, body);
+    }
+
+    private Reply products() throws SQLException {
+        List<Object> items = new ArrayList<>();
+        for (DBService.ProductInfo product : dbService.getAvailableProducts()) {
+            items.add(productJson(product));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("products", items);
+        return new Reply(200, body);
+    }
+
+    private Reply product(int id) throws SQLException {
+        DBService.ProductInfo product = ProductCatalog.getInstance().get(id);
+        if (product == null) {
+            throw new ApiException(404, "No product " + id);
+        }
+        return new Reply(200, productJson(product));
+    }
+
+    private Reply placeOrder(User customer, Map<String, Object> request) throws SQLException {
+        Object rawLines = request.get("lines");
+        if (!(rawLines instanceof List) || ((List<?>) rawLines).isEmpty()) {
+            throw new IllegalArgumentException("lines must be a non-empty array");
+        }
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        List<OrderLine> lines = new ArrayList<>();
+        List<LineFailure> unknown = new ArrayList<>();
+        for (Object rawLine : (List<?>) rawLines) {
+            if (!(rawLine instanceof Map)) {
+                throw new IllegalArgumentException("Each line must be an object");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> line = (Map<String, Object>) rawLine;
+            int productId = integer(line, "productId");
+            int quantity = integer(line, "quantity");
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("quantity must be positive for product " + productId);
+            }
+            DBService.ProductInfo product = catalog.get(productId);
+            if (product == null) {
+                unknown.add(new LineFailure(productId, quantity, -1, "No such product"));
+            } else {
+                lines.add(new OrderLine(productId, quantity, product.price));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            return new Reply(409, failuresJson(unknown));
+        }
+
+        OrderService.OrderResult result;
+        if (!acquire(checkouts, checkoutWaitMs)) {
+            throw new ApiException(503, "Too many checkouts in progress; retry shortly");
+        }
+        try {
+            result = orderService.placeOrder(customer.getId(), lines);
+        } finally {
+            checkouts.release();
+        }
+        if (!result.success) {
+            return new Reply(409, failuresJson(result.failures));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("total", result.total);
+        return new Reply(201, body);
+    }
+
+    private Reply orderHistory(User customer, Map<String, String> params) throws SQLException {
+        int pageSize = DBService.HISTORY_PAGE_SIZE;
+        if (params.containsKey("pageSize")) {
+            pageSize = parseId(params.get("pageSize"));
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+            }
+        }
+        DBService.OrderHistoryPage page = dbService.getCustomerOrderHistoryPage(customer.getId(),
+                params.get("next"), pageSize);
+        List<Object> items = new ArrayList<>();
+        for (DBService.OrderHistory item : page.items) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("id", item.id);
+            json.put("product", item.productName);
+            json.put("quantity", item.quantity);
+            json.put("unitPrice", item.unitPrice);
+            json.put("total", item.total);
+            json.put("saleDate", item.saleDate);
+            items.add(json);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        body.put("next", page.nextToken);
+        return new Reply(200, body);
+    }
+
+    private User requireCustomer(HttpExchange exchange) {
+        User user = sessions.get(bearerToken(exchange));
+        if (user == null) {
+            throw new ApiException(401, "Log in first (POST /api/sessions) and send the token as a Bearer token");
+        }
+        if (!"Customer".equals(user.getRole())) {
+            throw new ApiException(403, "Only customer accounts can order");
+        }
+        return user;
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return header.substring(7).trim();
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!allowed.equals(method)) {
+            throw new ApiException(405, method + " is not supported here; use " + allowed);
+        }
+    }
+
+    private static boolean acquire(Semaphore semaphore, long waitMs) {
+        try {
+            return semaphore.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        Object parsed = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        if (!(parsed instanceof Map)) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) parsed;
+        return object;
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String string(Map<String, Object> object, String field) {
+        Object value = object.get(field);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static String optionalString(Map<String, Object> object, String field) {
+        Object value = object.get(field);
+        return value instanceof String ? (String) value : "";
+    }
+
+    private static int integer(Map<String, Object> object, String field) {
+        Object value = object.get(field);
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException(field + " must be an integer");
+        }
+        return ((Long) value).intValue();
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + text);
+        }
+    }
+
+    private static Map<String, Object> productJson(DBService.ProductInfo product) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", product.id);
+        json.put("name", product.name);
+        json.put("price", product.price);
+        json.put("stock", product.stock);
+        return json;
+    }
+
+    private static Map<String, Object> userJson(User user) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", user.getId());
+        json.put("username", user.getUsername());
+        json.put("role", user.getRole());
+        return json;
+    }
+
+    private static Map<String, Object> failuresJson(List<LineFailure> failures) {
+        List<Object> items = new ArrayList<>();
+        for (LineFailure failure : failures) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("productId", failure.productId);
+            json.put("requested", failure.requested);
+            json.put("available", failure.available);
+            json.put("reason", failure.reason);
+            items.add(json);
+        }
+        Map<String, Object> body = error("Some items could not be ordered");
+        body.put("failures", items);
+        return body;
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("error", message);
+        return json;
+    }
+
+    private static class Reply {
+        final int status;
+        final Object body; // null for an empty response
+
+        Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
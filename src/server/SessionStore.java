@@ -0,0 +1,75 @@
+package server;
+
+import models.User;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bearer tokens handed out by {@code POST /api/sessions}. A session stays
+ * valid while it is used at least once per TTL; tokens live only in this
+ * process, so clients log in again after a server restart.
+ */
+class SessionStore {
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlMs;
+
+    SessionStore(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    String open(User user) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(user, System.currentTimeMillis() + ttlMs));
+        return token;
+    }
+
+    /** The user of a live session, or null; using a session extends it. */
+    User get(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.expiresAt <= now) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.expiresAt = now + ttlMs;
+        return session.user;
+    }
+
+    void close(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /** Drops expired sessions; called periodically so abandoned ones don't pile up. */
+    void expire() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAt <= now);
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    private static class Session {
+        final User user;
+        volatile long expiresAt;
+
+        Session(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package services;
+
+import dbconnection.DBConfig;
+import models.Customer;
+import models.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Loads customer and staff accounts in bulk, e.g. when onboarding a store.
+ *
+ * Records are taken in chunks of {@code import.chunkSize}. For each chunk the
+ * usernames are checked against both account tables with one IN query, the
+ * passwords are hashed in parallel, and the rows are inserted with JDBC
+ * batches and committed together. A chunk whose batch fails is retried row by
+ * row, so one bad record only rejects itself. Rows that aren't imported are
+ * listed in the returned {@link ImportReport} with the reason.
+ */
+public class AccountImportService {
+    private static final String INSERT_CUSTOMER_SQL =
+            "INSERT INTO customers (username, password, address, cellNo) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_STAFF_SQL =
+            "INSERT INTO users (username, password, role_id) VALUES (?, ?, ?)";
+    // findExisting binds each username twice; MySQL and H2 take at most 65535 parameters
+    private static final int MAX_CHUNK_SIZE = 30000;
+
+    private final DBService dbService;
+    private final int chunkSize;
+
+    public AccountImportService(DBService dbService) {
+        this.dbService = dbService;
+        this.chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(1, DBConfig.load().getInt("import.chunkSize", 1000)));
+    }
+
+    public ImportReport importCustomers(Stream<Customer> customers) throws SQLException {
+        int[] row = {0};
+        return importAll(customers.map(c -> new Candidate(++row[0], false,
+                c.getUsername(), c.getPassword(), c.getAddress(), c.getCellNo())).iterator());
+    }
+
+    public ImportReport importStaff(Stream<User> staff) throws SQLException {
+        int[] row = {0};
+        return importAll(staff.map(u -> new Candidate(++row[0], true,
+                u.getUsername(), u.getPassword(), null, null)).iterator());
+    }
+
+    /**
+     * Imports a CSV file with a header row naming the columns username,
+     * password, address, cellNo and role (any order, case-insensitive).
+     * A blank or "Customer" role makes a customer account, "Staff" a staff
+     * account. Rows are numbered by their line in the file.
+     */
+    public ImportReport importCsv(Path file) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new ImportReport(0, Collections.emptyList());
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = Csv.parseLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("username") || !columns.containsKey("password")) {
+                throw new IOException("CSV header must name at least the username and password columns");
+            }
+
+            Iterator<Candidate> rows = new Iterator<>() {
+                private int lineNumber = 1;
+                private Candidate next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null) {
+                        String line;
+                        try {
+                            line = reader.readLine();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        if (line == null) {
+                            return false;
+                        }
+                        lineNumber++;
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        List<String> values = Csv.parseLine(line);
+                        String role = column(values, columns, "role");
+                        boolean staff = role != null && role.equalsIgnoreCase("Staff");
+                        next = new Candidate(lineNumber, staff, column(values, columns, "username"),
+                                rawColumn(values, columns, "password"), column(values, columns, "address"),
+                                column(values, columns, "cellno"));
+                        if (role != null && !role.isEmpty() && !staff && !role.equalsIgnoreCase("Customer")) {
+                            next.rejection = "Unknown role: " + role;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public Candidate next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Candidate current = next;
+                    next = null;
+                    return current;
+                }
+            };
+            try {
+                return importAll(rows);
+            } catch (IllegalStateException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private ImportReport importAll(Iterator<Candidate> records) throws SQLException {
+        List<Rejection> rejections = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int imported = 0;
+        ExecutorService hashers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Candidate> chunk = new ArrayList<>(chunkSize);
+            while (records.hasNext()) {
+                chunk.add(records.next());
+                if (chunk.size() == chunkSize || !records.hasNext()) {
+                    imported += importChunk(chunk, seen, hashers, rejections);
+                    chunk.clear();
+                }
+            }
+        } finally {
+            hashers.shutdownNow();
+        }
+        rejections.sort(Comparator.comparingInt(r -> r.row));
+        return new ImportReport(imported, rejections);
+    }
+
+    private int importChunk(List<Candidate> chunk, Set<String> seen, ExecutorService hashers,
+                            List<Rejection> rejections) throws SQLException {
+        List<Candidate> accepted = new ArrayList<>();
+        for (Candidate c : chunk) {
+            String reason = c.rejection != null ? c.rejection : validate(c);
+            if (reason == null && !seen.add(c.username.toLowerCase(Locale.ROOT))) {
+                reason = "Duplicate username in import";
+            }
+            if (reason != null) {
+                rejections.add(new Rejection(c.row, c.username, reason));
+            } else {
+                accepted.add(c);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> taken = findExisting(accepted);
+        List<Candidate> fresh = new ArrayList<>();
+        for (Candidate c : accepted) {
+            if (taken.contains(c.username.toLowerCase(Locale.ROOT))) {
+                rejections.add(new Rejection(c.row, c.username, "Username already exists"));
+            } else {
+                fresh.add(c);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return 0;
+        }
+
+        hashPasswords(fresh, hashers);
+
+        int imported;
+        try (Connection conn = dbService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                insert(conn, fresh);
+                conn.commit();
+                imported = fresh.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                imported = insertOneByOne(conn, fresh, rejections);
+            }
+        }
+        UsernameRegistry registry = UsernameRegistry.getInstance();
+        for (Candidate c : fresh) {
+            if (c.rejection == null) {
+                registry.add(c.username);
+            }
+        }
+        return imported;
+    }
+
+    private static String validate(Candidate c) {
+        if (c.username == null || c.username.isBlank()) {
+            return "Missing username";
+        }
+        if (c.password == null || c.password.isEmpty()) {
+            return "Missing password";
+        }
+        if (!c.staff) {
+            if (c.address == null || c.address.isBlank()) {
+                return "Missing address";
+            }
+            if (c.cellNo == null || !c.cellNo.matches("\\d{11}")) {
+                return "Cell number must be exactly 11 digits";
+            }
+        }
+        return null;
+    }
+
+    private Set<String> findExisting(List<Candidate> candidates) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(candidates.size(), "?"));
+        Object[] params = new Object[candidates.size() * 2];
+        for (int i = 0; i < candidates.size(); i++) {
+            params[i] = candidates.get(i).username;
+            params[candidates.size() + i] = candidates.get(i).username;
+        }
+        Set<String> existing = new HashSet<>();
+        dbService.forEachRow(
+                "SELECT username FROM customers WHERE username IN (" + placeholders + ") " +
+                "UNION ALL SELECT username FROM users WHERE username IN (" + placeholders + ")",
+                rs -> existing.add(rs.getString(1).toLowerCase(Locale.ROOT)),
+                params);
+        return existing;
+    }
+
+    private static void hashPasswords(List<Candidate> candidates, ExecutorService hashers) throws SQLException {
+        PasswordHasher hasher = PasswordHasher.getInstance();
+        List<Future<String>> hashes = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) {
+            hashes.add(hashers.submit(() -> hasher.hash(c.password)));
+        }
+        try {
+            for (int i = 0; i < candidates.size(); i++) {
+                candidates.get(i).passwordHash = hashes.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Account import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Could not hash passwords", e.getCause());
+        }
+    }
+
+    private void insert(Connection conn, List<Candidate> candidates) throws SQLException {
+        List<Object[]> customers = new ArrayList<>();
+        List<Object[]> staff = new ArrayList<>();
+        for (Candidate c : candidates) {
+            if (c.staff) {
+                staff.add(new Object[]{c.username, c.passwordHash, "Staff"});
+            } else {
+                customers.add(new Object[]{c.username, c.passwordHash, c.address, c.cellNo});
+            }
+        }
+        if (!customers.isEmpty()) {
+            dbService.executeBatch(conn, INSERT_CUSTOMER_SQL, customers);
+        }
+        if (!staff.isEmpty()) {
+            dbService.executeBatch(conn, INSERT_STAFF_SQL, staff);
+        }
+    }
+
+    private int insertOneByOne(Connection conn, List<Candidate> candidates, List<Rejection> rejections)
+            throws SQLException {
+        int imported = 0;
+        for (Candidate c : candidates) {
+            try {
+                if (c.staff) {
+                    dbService.executeUpdate(conn, INSERT_STAFF_SQL, c.username, c.passwordHash, "Staff");
+                } else {
+                    dbService.executeUpdate(conn, INSERT_CUSTOMER_SQL, c.username, c.passwordHash, c.address, c.cellNo);
+                }
+                conn.commit();
+                imported++;
+            } catch (SQLException e) {
+                conn.rollback();
+                c.rejection = e.getMessage();
+                rejections.add(new Rejection(c.row, c.username, e.getMessage()));
+            }
+        }
+        return imported;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        String value = rawColumn(values, columns, name);
+        return value != null ? value.trim() : null;
+    }
+
+    // As written, for values where surrounding spaces are significant, i.e. passwords
+    private static String rawColumn(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        return values.get(index);
+    }
+
+    private static class Candidate {
+        final int row;
+        final boolean staff;
+        final String username;
+        final String password;
+        final String address;
+        final String cellNo;
+        String passwordHash;
+        String rejection;
+
+        Candidate(int row, boolean staff, String username, String password, String address, String cellNo) {
+            this.row = row;
+            this.staff = staff;
+            this.username = username != null ? username.trim() : null;
+            this.password = password;
+            this.address = address;
+            this.cellNo = cellNo;
+        }
+    }
+
+    public static class ImportReport {
+        public final int imported;
+        public final List<Rejection> rejections;
+
+        public ImportReport(int imported, List<Rejection> rejections) {
+            this.imported = imported;
+            this.rejections = rejections;
+        }
+    }
+
+    public static class Rejection {
+        public final int row;
+        public final String username;
+        public final String reason;
+
+        public Rejection(int row, String username, String reason) {
+            this.row = row;
+            this.username = username;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + (username != null ? " (" + username + ")" : "") + ": " + reason;
+        }
+    }
+}
@@ -1,34 +1,170 @@
 package services;
 
-import dbconnection.DBConnection;
+import dbconnection.DBConfig;
 import models.User;
-import java.sql.*;
 
-/*public class AuthService {
-    public User authenticate(String username, String password) {
-        String query = "SELECT id, username, password, role_id FROM users WHERE username = ? AND password = ?";
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+/**
+ * Logs customers and staff in.
+ *
+ * A username is looked up in customers and users with one query (both tables
+ * are indexed on username), and the password is checked with
+ * {@link PasswordHasher}. Plaintext or under-strength hashes are replaced on
+ * a successful login.
+ *
+ * Successful logins are remembered for {@code auth.cacheTtlMs}, keyed by
+ * username and a keyed digest of the password, so logging in again on the
+ * same terminal within that window skips both the query and the hash.
+ */
+public class AuthService {
+    private static final Logger LOGGER = Logger.getLogger(AuthService.class.getName());
+    private static final AuthService INSTANCE = new AuthService();
 
-            stmt.setString(1, username);
-            stmt.setString(2, password); // Consider hashing this for production
+    static final String LOOKUP_SQL =
+            "SELECT 'customers' AS source, id, password, 'Customer' AS role_id FROM customers WHERE username = ? " +
+            "UNION ALL " +
+            "SELECT 'users' AS source, id, password, role_id FROM users WHERE username = ?";
+    private static final int MAX_CACHED_LOGINS = 1000;
 
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
+    private final PasswordHasher hasher = PasswordHasher.getInstance();
+    private final Map<String, CachedLogin> recentLogins = new ConcurrentHashMap<>();
+    private final long cacheTtlMs = DBConfig.load().getLong("auth.cacheTtlMs", 60000);
+    private final byte[] cacheKey = new byte[32];
+    private DBService dbService;
+
+    private AuthService() {
+        new SecureRandom().nextBytes(cacheKey);
+    }
+
+    public static AuthService getInstance() {
+        return INSTANCE;
+    }
+
+    /** Returns the account for these credentials, or null if they don't match. */
+    public User authenticate(String username, String password) throws SQLException {
+        if (username == null || password == null) {
+            return null;
+        }
+        byte[] digest = digest(username, password);
+        CachedLogin cached = recentLogins.get(username);
+        if (cached != null) {
+            if (cached.expiresAt > System.currentTimeMillis() && MessageDigest.isEqual(cached.digest, digest)) {
+                return copyOf(cached.user);
+            }
+            recentLogins.remove(username, cached);
+        }
+
+        List<Account> accounts = getDBService().query(LOOKUP_SQL,
+                rs -> new Account(rs.getString("source"), rs.getInt("id"),
+                        rs.getString("password"), rs.getString("role_id")),
+                username, username);
+        for (Account account : accounts) {
+            if (hasher.verify(password, account.password)) {
+                if (hasher.needsRehash(account.password)) {
+                    rehash(account, password);
+                }
                 User user = new User();
-                user.setId(rs.getInt("id"));
-                user.setUsername(rs.getString("username"));
-                user.setPassword(rs.getString("password"));
-                user.setRole(rs.getString("role_id"));
-                return user;
+                user.setId(account.id);
+                user.setUsername(username);
+                user.setRole(account.role);
+                remember(username, digest, user);
+                return copyOf(user);
             }
+        }
+        return null;
+    }
+
+    /** Drops a remembered login, e.g. after the account's password changed. */
+    public void invalidate(String username) {
+        recentLogins.remove(username);
+    }
+
+    private void rehash(Account account, String password) {
+        // The table name comes from the literal in LOOKUP_SQL, never from input
+        String sql = "UPDATE " + account.source + " SET password = ? WHERE id = ? AND password = ?";
+        try {
+            getDBService().executeUpdate(sql, hasher.hash(password), account.id, account.password);
         } catch (SQLException e) {
-            System.err.println("SQL Error: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("General Error: " + e.getMessage());
+            LOGGER.log(Level.WARNING, "Could not upgrade password hash of " + account.source + " " + account.id, e);
         }
+    }
 
-        return null;
+    private void remember(String username, byte[] digest, User user) {
+        if (cacheTtlMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (recentLogins.size() >= MAX_CACHED_LOGINS) {
+            recentLogins.values().removeIf(login -> login.expiresAt <= now);
+            if (recentLogins.size() >= MAX_CACHED_LOGINS) {
+                return;
+            }
+        }
+        recentLogins.put(username, new CachedLogin(user, digest, now + cacheTtlMs));
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(cacheKey, "HmacSHA256"));
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private synchronized DBService getDBService() throws SQLException {
+        if (dbService == null) {
+            dbService = new DBService();
+        }
+        return dbService;
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setRole(user.getRole());
+        return copy;
+    }
+
+    private static class Account {
+        final String source;
+        final int id;
+        final String password;
+        final String role;
+
+        Account(String source, int id, String password, String role) {
+            this.source = source;
+            this.id = id;
+            this.password = password;
+            this.role = role;
+        }
+    }
+
+    private static class CachedLogin {
+        final User user;
+        final byte[] digest;
+        final long expiresAt;
+
+        CachedLogin(User user, byte[] digest, long expiresAt) {
+            this.user = user;
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
     }
 }
@@ -0,0 +1,495 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps the application's tables to a backup directory and loads them back.
+ *
+ * Each table is read through a forward-only, read-only cursor and written
+ * row by row to {@code <table>.rows.gz}, so memory use doesn't depend on
+ * table size. Stock, sales and everything derived from them (totals,
+ * rollups, the inventory journal and snapshots) have to agree with each
+ * other, so they are read one after another in a single consistent-snapshot
+ * transaction. Nothing is locked, so orders keep coming in meanwhile. The
+ * independent tables are exported in parallel ({@code backup.threads}), each
+ * on its own pooled connection, once the snapshot has started; they hold at
+ * least every supplier and customer the snapshot refers to.
+ * {@code manifest.properties} records each file's row count and SHA-256.
+ *
+ * Restore verifies every checksum first, then replaces the tables' contents
+ * in one transaction: deletes run children-first and batched inserts run
+ * parents-first, ordered by the foreign keys the database reports.
+ */
+public class BackupService {
+    private static final Logger LOGGER = Logger.getLogger(BackupService.class.getName());
+
+    // Base tables only; totalsales_daily is a view over totalsales
+    private static final List<String> TABLES = List.of(
+            "suppliers", "products", "customers", "users", "sales", "totalsales",
+            "sales_daily_product", "sales_daily_customer",
+            "inventory_journal", "inventory_snapshots", "inventory_snapshot_stock");
+    // Read in one snapshot, since each of them is checked against or derived from the others
+    private static final List<String> SNAPSHOT_TABLES = List.of(
+            "products", "sales", "totalsales", "sales_daily_product", "sales_daily_customer",
+            "inventory_journal", "inventory_snapshots", "inventory_snapshot_stock");
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String MAGIC = "MSBK";
+
+    // Column encodings in the table files
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte DECIMAL = 3;
+    private static final byte DATE = 4;
+    private static final byte TIMESTAMP = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte BYTES = 7;
+    private static final byte TEXT = 8;
+
+    private final DBService dbService;
+    private final int threads;
+    private final int fetchSize;
+    private final int batchSize;
+
+    public BackupService(DBService dbService) {
+        this.dbService = dbService;
+        DBConfig config = DBConfig.load();
+        this.threads = Math.max(1, config.getInt("backup.threads", 4));
+        this.fetchSize = Math.max(1, config.getInt("backup.fetchSize", 5000));
+        this.batchSize = Math.max(1, config.getInt("backup.batchSize", 1000));
+    }
+
+    /** Writes a new timestamped backup under the given directory and returns its path. */
+    public Path backup(Path parent) throws SQLException, IOException {
+        Path dir = parent.resolve("backup-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+        long started = System.currentTimeMillis();
+
+        Map<String, Future<String[]>> exports = new LinkedHashMap<>();
+        Map<String, String[]> results = new HashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            try (Connection conn = dbService.getConnection()) {
+                int isolation = conn.getTransactionIsolation();
+                conn.setReadOnly(true);
+                try {
+                    dbService.getDialect().beginSnapshot(conn);
+                    for (String table : TABLES) {
+                        if (!SNAPSHOT_TABLES.contains(table)) {
+                            exports.put(table, pool.submit(() -> exportTable(table, dir.resolve(table + ".rows.gz"))));
+                        }
+                    }
+                    for (String table : SNAPSHOT_TABLES) {
+                        results.put(table, exportTable(conn, table, dir.resolve(table + ".rows.gz")));
+                    }
+                    conn.commit();
+                } finally {
+                    conn.rollback(); // no-op after the commit; ends the snapshot if an export failed
+                    conn.setAutoCommit(true);
+                    conn.setTransactionIsolation(isolation);
+                    conn.setReadOnly(false);
+                }
+            }
+            for (Map.Entry<String, Future<String[]>> export : exports.entrySet()) {
+                results.put(export.getKey(), await(export.getValue()));
+            }
+
+            Properties manifest = new Properties();
+            manifest.setProperty("format", String.valueOf(FORMAT_VERSION));
+            manifest.setProperty("created", LocalDateTime.now().toString());
+            manifest.setProperty("tables", String.join(",", TABLES));
+            for (String table : TABLES) {
+                String[] result = results.get(table);
+                manifest.setProperty(table + ".rows", result[0]);
+                manifest.setProperty(table + ".sha256", result[1]);
+            }
+            try (OutputStream out = Files.newOutputStream(dir.resolve("manifest.properties"))) {
+                manifest.store(out, "Database backup");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        LOGGER.info("Backup written to " + dir + " in " + (System.currentTimeMillis() - started) + " ms");
+        return dir;
+    }
+
+    /** Replaces the contents of every table with the given backup. */
+    public void restore(Path dir) throws SQLException, IOException {
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve("manifest.properties"))) {
+            manifest.load(in);
+        }
+        if (!String.valueOf(FORMAT_VERSION).equals(manifest.getProperty("format"))) {
+            throw new IOException("Unsupported backup format: " + manifest.getProperty("format"));
+        }
+        List<String> tables = new ArrayList<>();
+        for (String table : manifest.getProperty("tables", "").split(",")) {
+            if (!TABLES.contains(table)) {
+                throw new IOException("Backup contains unknown table: " + table);
+            }
+            tables.add(table);
+        }
+        for (String table : tables) {
+            String expected = manifest.getProperty(table + ".sha256");
+            String actual = sha256(dir.resolve(table + ".rows.gz"));
+            if (!actual.equals(expected)) {
+                throw new IOException("Checksum mismatch for " + table + "; the backup is damaged");
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        try (Connection conn = dbService.getConnection()) {
+            List<String> ordered = parentsFirst(conn, tables);
+            conn.setAutoCommit(false);
+            try {
+                for (int i = ordered.size() - 1; i >= 0; i--) {
+                    dbService.executeUpdate(conn, "DELETE FROM " + ordered.get(i));
+                }
+                for (String table : ordered) {
+                    long rows = importTable(conn, table, dir.resolve(table + ".rows.gz"));
+                    long expected = Long.parseLong(manifest.getProperty(table + ".rows", "-1"));
+                    if (rows != expected) {
+                        throw new IOException("Expected " + expected + " rows for " + table + " but read " + rows);
+                    }
+                }
+                for (String table : ordered) {
+                    // A whole-table tombstone: open tabs of these tables reload
+                    dbService.executeUpdate(conn, DBService.TOMBSTONE_SQL, table, null);
+                }
+                if (ordered.contains("products")) {
+                    // Restored versions are in the past; make open dashboards pick up every product
+                    dbService.executeUpdate(conn, "UPDATE products SET version = ?", ProductChangeFeed.nextVersion());
+                }
+                conn.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        ProductCatalog.getInstance().invalidate();
+        DBService.invalidateAllOrderHistory();
+        UsernameRegistry.getInstance().invalidate();
+        LOGGER.info("Restored " + dir + " in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    private String[] exportTable(String table, Path file) throws SQLException, IOException {
+        try (Connection conn = dbService.getConnection()) {
+            conn.setReadOnly(true);
+            conn.setAutoCommit(false); // PostgreSQL-style drivers need this for cursors too
+            try {
+                return exportTable(conn, table, file);
+            } finally {
+                conn.rollback();
+                conn.setReadOnly(false); // the pool hands the connection out again for writes
+            }
+        }
+    }
+
+    private String[] exportTable(Connection conn, String table, Path file) throws SQLException, IOException {
+        MessageDigest digest = newDigest();
+        long rows = 0;
+        try (Statement statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(dbService.getDialect().streamingFetchSize(fetchSize));
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM " + table);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                         new DigestOutputStream(Files.newOutputStream(file), digest), 1 << 16)))) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                byte[] encodings = new byte[columns];
+                out.writeBytes(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(columns);
+                for (int i = 1; i <= columns; i++) {
+                    encodings[i - 1] = encodingOf(meta.getColumnType(i));
+                    writeString(out, meta.getColumnName(i));
+                    out.writeByte(encodings[i - 1]);
+                }
+                while (rs.next()) {
+                    out.writeBoolean(true);
+                    for (int i = 1; i <= columns; i++) {
+                        writeValue(out, rs, i, encodings[i - 1]);
+                    }
+                    rows++;
+                }
+                out.writeBoolean(false);
+            }
+        }
+        return new String[]{String.valueOf(rows), HexFormat.of().formatHex(digest.digest())};
+    }
+
+    private long importTable(Connection conn, String table, Path file) throws SQLException, IOException {
+        long rows = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16)))) {
+            byte[] magic = new byte[MAGIC.length()];
+            in.readFully(magic);
+            if (!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII)) || in.readInt() != FORMAT_VERSION) {
+                throw new IOException(file + " is not a backup table file");
+            }
+            int columns = in.readInt();
+            Set<String> known = columnsOf(conn, table);
+            List<String> names = new ArrayList<>();
+            byte[] encodings = new byte[columns];
+            for (int i = 0; i < columns; i++) {
+                String name = readString(in);
+                if (!known.contains(name.toLowerCase(Locale.ROOT))) {
+                    throw new IOException(table + " has no column " + name);
+                }
+                names.add(name);
+                encodings[i] = in.readByte();
+            }
+
+            String sql = "INSERT INTO " + table + " (" + String.join(", ", names) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            try (PreparedStatement insert = conn.prepareStatement(sql)) {
+                int pending = 0;
+                while (in.readBoolean()) {
+                    for (int i = 0; i < columns; i++) {
+                        insert.setObject(i + 1, readValue(in, encodings[i]));
+                    }
+                    insert.addBatch();
+                    rows++;
+                    if (++pending == batchSize) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    insert.executeBatch();
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Set<String> columnsOf(Connection conn, String table) throws SQLException {
+        Set<String> names = new LinkedHashSet<>();
+        try (Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                names.add(meta.getColumnName(i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return names;
+    }
+
+    /** Orders tables so every table comes after the tables its foreign keys point to. */
+    private static List<String> parentsFirst(Connection conn, List<String> tables) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        Map<String, Set<String>> parents = new LinkedHashMap<>();
+        for (String table : tables) {
+            Set<String> refs = new LinkedHashSet<>();
+            for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+                try (ResultSet rs = meta.getImportedKeys(conn.getCatalog(), null, name)) {
+                    while (rs.next()) {
+                        String parent = rs.getString("PKTABLE_NAME").toLowerCase(Locale.ROOT);
+                        if (tables.contains(parent) && !parent.equals(table)) {
+                            refs.add(parent);
+                        }
+                    }
+                }
+            }
+            parents.put(table, refs);
+        }
+
+        List<String> ordered = new ArrayList<>();
+        while (ordered.size() < tables.size()) {
+            boolean progressed = false;
+            for (String table : tables) {
+                if (!ordered.contains(table) && ordered.containsAll(parents.get(table))) {
+                    ordered.add(table);
+                    progressed = true;
+                }
+            }
+            if (!progressed) {
+                // A foreign key cycle; keep the remaining tables in their listed order
+                for (String table : tables) {
+                    if (!ordered.contains(table)) {
+                        ordered.add(table);
+                    }
+                }
+            }
+        }
+        return ordered;
+    }
+
+    private static byte encodingOf(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return DECIMAL;
+            case Types.DATE:
+                return DATE;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return TIMESTAMP;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return BYTES;
+            default:
+                return TEXT;
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, ResultSet rs, int column, byte encoding)
+            throws SQLException, IOException {
+        Object value;
+        switch (encoding) {
+            case LONG: value = rs.getLong(column); break;
+            case DOUBLE: value = rs.getDouble(column); break;
+            case DECIMAL: value = rs.getBigDecimal(column); break;
+            case DATE: value = rs.getDate(column); break;
+            case TIMESTAMP: value = rs.getTimestamp(column); break;
+            case BOOLEAN: value = rs.getBoolean(column); break;
+            case BYTES: value = rs.getBytes(column); break;
+            default: value = rs.getString(column); break;
+        }
+        if (rs.wasNull() || value == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+        switch (encoding) {
+            case LONG: out.writeLong((Long) value); break;
+            case DOUBLE: out.writeDouble((Double) value); break;
+            case DECIMAL: writeString(out, ((BigDecimal) value).toPlainString()); break;
+            case DATE: out.writeLong(((Date) value).toLocalDate().toEpochDay()); break;
+            case TIMESTAMP: writeString(out, ((Timestamp) value).toLocalDateTime().toString()); break;
+            case BOOLEAN: out.writeBoolean((Boolean) value); break;
+            case BYTES:
+                out.writeInt(((byte[]) value).length);
+                out.write((byte[]) value);
+                break;
+            default: writeString(out, (String) value); break;
+        }
+    }
+
+    private static Object readValue(DataInputStream in, byte encoding) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        switch (encoding) {
+            case LONG: return in.readLong();
+            case DOUBLE: return in.readDouble();
+            case DECIMAL: return new BigDecimal(readString(in));
+            case DATE: return Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+            case TIMESTAMP: return Timestamp.valueOf(LocalDateTime.parse(readString(in)));
+            case BOOLEAN: return in.readBoolean();
+            case BYTES:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            case TEXT: return readString(in);
+            default: throw new IOException("Unknown column encoding " + encoding);
+        }
+    }
+
+    // Length-prefixed UTF-8; DataOutputStream.writeUTF stops at 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(file)), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Backup interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new SQLException("Backup failed", e.getCause());
+        }
+    }
+}
@@ -1,55 +1,429 @@
 package services;
 
+import dbconnection.CachingConnection;
+import dbconnection.DBConfig;
 import dbconnection.DBConnection;
+import dbconnection.Dialect;
+import models.OrderLine;
 import java.sql.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 
 public class DBService {
-    private Connection connection;
+    // Tables the dashboard may browse; their column names are whitelisted from metadata
+    private static final Set<String> BROWSABLE_TABLES = Set.of(
+            "products", "suppliers", "users", "sales", "customers", "totalsales", "totalsales_daily");
+    private static final Map<String, TableMeta> TABLE_META = new ConcurrentHashMap<>();
+
+    public static final int HISTORY_PAGE_SIZE = 50;
+    private static final int HISTORY_CACHE_CUSTOMERS = 1000;
+    private static final Map<Integer, OrderHistoryPage> RECENT_HISTORY = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, OrderHistoryPage> eldest) {
+                    return size() > HISTORY_CACHE_CUSTOMERS;
+                }
+            });
+    private static final AtomicLong historyEpoch = new AtomicLong();
+
+    private static final int TOTAL_SALES_SHARDS = Math.max(1, DBConfig.load().getInt("totalsales.shards", 8));
+    static final String DAY_TOTAL_SQL = "SELECT SUM(amount) FROM totalsales WHERE sale_date = ?";
+    static final String TOMBSTONE_SQL = "INSERT INTO deleted_rows (table_name, row_id) VALUES (?, ?)";
+    static final String LOAD_PRODUCTS_SQL = "SELECT id, name, price, stocks, version FROM products";
+
+    private static final String HISTORY_SELECT =
+            "SELECT s.id, p.name, s.quantity_sold, p.price, (s.quantity_sold * p.price) as total, s.sale_date " +
+            "FROM sales s JOIN products p ON s.productId = p.id WHERE s.customer_id = ? ";
+    static final String ORDER_HISTORY_SQL = HISTORY_SELECT + "ORDER BY s.sale_date DESC";
+    static final String HISTORY_FIRST_PAGE_SQL = HISTORY_SELECT + "ORDER BY s.sale_date DESC, s.id DESC LIMIT ?";
+    static final String HISTORY_NEXT_PAGE_SQL = HISTORY_SELECT +
+            "AND (s.sale_date < ? OR (s.sale_date = ? AND s.id < ?)) ORDER BY s.sale_date DESC, s.id DESC LIMIT ?";
+
+    private final QueryMetrics metrics = QueryMetrics.getInstance();
+    private final Dialect dialect;
+    private final String addTotalSalesSql;
 
     public DBService() throws SQLException {
-        this.connection = DBConnection.getConnection();
+        // Make sure the shared pool is up so construction fails fast when the database is down
+        DBConnection.getPool();
+        this.dialect = DBConnection.getDialect();
+        this.addTotalSalesSql = upsertAddingSql("totalsales", new String[]{"sale_date", "shard"}, new String[]{"amount"});
+    }
+
+    public Dialect getDialect() {
+        return dialect;
     }
 
+    /**
+     * SQL that inserts a row, or adds to its counter columns when a row with the
+     * same unique key already exists, in this database's dialect. Bind the key
+     * values first, then the amounts.
+     */
+    public String upsertAddingSql(String table, String[] keys, String[] counters) {
+        return dialect.upsertAdding(table, keys, counters);
+    }
+
+    /**
+     * Borrows a pooled connection. The caller owns it and must close it
+     * (try-with-resources) to return it to the pool.
+     */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = DBConnection.getConnection();
-        }
-        return this.connection;
+        return DBConnection.getConnection();
     }
 
+    /**
+     * Runs a query and returns a disconnected copy of the result, so the
+     * connection is back in the pool before the caller starts reading.
+     * Prefer {@link #query} / {@link #forEachRow}, which don't copy the rows.
+     */
     public ResultSet executeQuery(String query) throws SQLException {
-        Statement statement = getConnection().createStatement();
-        return statement.executeQuery(query);
+        return executeQuery(query, new Object[0]);
     }
 
     public ResultSet executeQuery(String query, Object... params) throws SQLException {
-        PreparedStatement statement = getConnection().prepareStatement(query);
-        for (int i = 0; i < params.length; i++) {
-            statement.setObject(i + 1, params[i]);
+        long started = System.nanoTime();
+        long rows = -1;
+        try (Connection conn = getConnection()) {
+            PreparedStatement statement = prepare(conn, query, params);
+            try (ResultSet rs = statement.executeQuery()) {
+                CachedRowSet copy = detach(rs);
+                rows = copy.size();
+                return copy;
+            } finally {
+                statement.clearParameters();
+            }
+        } finally {
+            metrics.record(query, started, rows);
         }
-        return statement.executeQuery();
     }
 
     public int executeUpdate(String query, Object... params) throws SQLException {
-        try (PreparedStatement statement = getConnection().prepareStatement(query)) {
-            for (int i = 0; i < params.length; i++) {
-                statement.setObject(i + 1, params[i]);
+        try (Connection conn = getConnection()) {
+            return executeUpdate(conn, query, params);
+        }
+    }
+
+    /** Runs an update on a connection the caller already holds, e.g. inside a transaction. */
+    public int executeUpdate(Connection conn, String query, Object... params) throws SQLException {
+        long started = System.nanoTime();
+        long rows = -1;
+        try {
+            PreparedStatement statement = prepare(conn, query, params);
+            try {
+                int updated = statement.executeUpdate();
+                rows = updated;
+                return updated;
+            } finally {
+                statement.clearParameters();
+            }
+        } finally {
+            metrics.record(query, started, rows);
+        }
+    }
+
+    /** Runs one statement for each parameter row as a single JDBC batch. */
+    public int[] executeBatch(Connection conn, String query, List<Object[]> rows) throws SQLException {
+        long started = System.nanoTime();
+        long affected = -1;
+        try {
+            PreparedStatement statement = prepare(conn, query, new Object[0]);
+            try {
+                for (Object[] params : rows) {
+                    for (int i = 0; i < params.length; i++) {
+                        statement.setObject(i + 1, params[i]);
+                    }
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                long total = 0;
+                for (int count : counts) {
+                    total += Math.max(0, count); // SUCCESS_NO_INFO is negative
+                }
+                affected = total;
+                return counts;
+            } finally {
+                statement.clearBatch();
+                statement.clearParameters();
             }
-            return statement.executeUpdate();
+        } finally {
+            metrics.record(query, started, affected);
         }
     }
 
+    /** Maps every row of the result to an object. The cursor is always closed. */
+    public <T> List<T> query(String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Connection conn = getConnection()) {
+            return query(conn, query, mapper, params);
+        }
+    }
+
+    public <T> List<T> query(Connection conn, String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        List<T> results = new ArrayList<>();
+        forEachRow(conn, query, rs -> results.add(mapper.mapRow(rs)), params);
+        return results;
+    }
+
+    /** Returns the first row mapped to an object, or null when there are no rows. */
+    public <T> T queryForObject(String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Connection conn = getConnection()) {
+            return queryForObject(conn, query, mapper, params);
+        }
+    }
+
+    public <T> T queryForObject(Connection conn, String query, RowMapper<T> mapper, Object... params) throws SQLException {
+        long started = System.nanoTime();
+        long rows = -1;
+        try {
+            PreparedStatement statement = prepare(conn, query, params);
+            try (ResultSet rs = statement.executeQuery()) {
+                boolean found = rs.next();
+                T result = found ? mapper.mapRow(rs) : null;
+                rows = found ? 1 : 0;
+                return result;
+            } finally {
+                statement.clearParameters();
+            }
+        } finally {
+            metrics.record(query, started, rows);
+        }
+    }
+
+    /** Streams the result row by row to the handler without collecting it. */
+    public void forEachRow(String query, RowHandler handler, Object... params) throws SQLException {
+        try (Connection conn = getConnection()) {
+            forEachRow(conn, query, handler, params);
+        }
+    }
+
+    public void forEachRow(Connection conn, String query, RowHandler handler, Object... params) throws SQLException {
+        long started = System.nanoTime();
+        long rows = -1;
+        try {
+            PreparedStatement statement = prepare(conn, query, params);
+            try (ResultSet rs = statement.executeQuery()) {
+                long count = 0;
+                while (rs.next()) {
+                    handler.handleRow(rs);
+                    count++;
+                }
+                rows = count;
+            } finally {
+                statement.clearParameters();
+            }
+        } finally {
+            metrics.record(query, started, rows);
+        }
+    }
+
+    /**
+     * Returns a bound prepared statement, taken from the connection's statement
+     * cache when it has one. Cached statements must not be closed by the caller.
+     */
+    private PreparedStatement prepare(Connection conn, String query, Object[] params) throws SQLException {
+        PreparedStatement statement = conn instanceof CachingConnection
+                ? ((CachingConnection) conn).prepareCached(query)
+                : conn.prepareStatement(query);
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+
+    private CachedRowSet detach(ResultSet rs) throws SQLException {
+        CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+        rowSet.populate(rs);
+        return rowSet;
+    }
+
     public ResultSet getTableData(String tableName) throws SQLException {
         String query = "SELECT * FROM " + tableName;
         return executeQuery(query);
     }
 
+    /** Column names of a table, read once from its metadata and cached. */
+    public List<String> getColumnNames(String tableName) throws SQLException {
+        return getTableMeta(tableName).names;
+    }
+
+    private TableMeta getTableMeta(String tableName) throws SQLException {
+        if (!BROWSABLE_TABLES.contains(tableName)) {
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+        TableMeta meta = TABLE_META.get(tableName);
+        if (meta == null) {
+            try (Connection conn = getConnection();
+                 Statement statement = conn.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT * FROM " + tableName + " WHERE 1 = 0")) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> names = new ArrayList<>();
+                int[] types = new int[metaData.getColumnCount()];
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    names.add(metaData.getColumnName(i));
+                    types[i - 1] = metaData.getColumnType(i);
+                }
+                meta = new TableMeta(List.copyOf(names), types);
+            }
+            TABLE_META.put(tableName, meta);
+        }
+        return meta;
+    }
+
+    /**
+     * Checks a query against the table's cached metadata without running it.
+     * Throws IllegalArgumentException naming the offending column or value.
+     */
+    public void validateQuery(TableQuery query) throws SQLException {
+        buildWhereClause(query, getTableMeta(query.getTableName()), new ArrayList<>());
+        buildOrderBy(query, getTableMeta(query.getTableName()));
+    }
+
+    public int countRows(String tableName) throws SQLException {
+        return countRows(new TableQuery(tableName, "id"));
+    }
+
+    public int countRows(TableQuery query) throws SQLException {
+        TableMeta meta = getTableMeta(query.getTableName());
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT COUNT(*) FROM " + query.getTableName() + buildWhereClause(query, meta, params);
+        Integer count = queryForObject(sql, rs -> rs.getInt(1), params.toArray());
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Reads up to {@code limit} matching rows in key order, starting after
+     * {@code afterKey} (from the first row when null). Keyset pagination: the cost
+     * doesn't grow with how deep into the table the page is. Only valid when the
+     * query is sorted by its key column.
+     */
+    public List<Object[]> fetchRowsAfter(TableQuery query, Object afterKey, int limit) throws SQLException {
+        TableMeta meta = getTableMeta(query.getTableName());
+        List<Object> params = new ArrayList<>();
+        String where = buildWhereClause(query, meta, params);
+        if (afterKey != null) {
+            String key = meta.resolve(query.getKeyColumn());
+            where += (where.isEmpty() ? " WHERE " : " AND ") + key + (query.isAscending() ? " > ?" : " < ?");
+            params.add(afterKey);
+        }
+        params.add(limit);
+        String sql = "SELECT * FROM " + query.getTableName() + where + buildOrderBy(query, meta) + " LIMIT ?";
+        return query(sql, DBService::toRow, params.toArray());
+    }
+
+    /** Reads a page by position; used for non-key sorts and when the previous page boundary isn't known. */
+    public List<Object[]> fetchRowsAt(TableQuery query, int offset, int limit) throws SQLException {
+        TableMeta meta = getTableMeta(query.getTableName());
+        List<Object> params = new ArrayList<>();
+        String where = buildWhereClause(query, meta, params);
+        params.add(limit);
+        params.add(offset);
+        String sql = "SELECT * FROM " + query.getTableName() + where + buildOrderBy(query, meta) + " LIMIT ? OFFSET ?";
+        return query(sql, DBService::toRow, params.toArray());
+    }
+
+    /**
+     * Turns the column filters into a parameterized WHERE clause. Filters are kept
+     * sargable so existing indexes apply: numbers and dates compare for equality
+     * (timestamps as a day range), text matches as a prefix.
+     */
+    private String buildWhereClause(TableQuery query, TableMeta meta, List<Object> params) {
+        StringBuilder where = new StringBuilder();
+        for (Map.Entry<String, String> filter : query.getFilters().entrySet()) {
+            int index = meta.indexOf(filter.getKey());
+            String column = meta.names.get(index);
+            String value = filter.getValue();
+            where.append(where.length() == 0 ? " WHERE " : " AND ");
+            try {
+                switch (meta.types[index]) {
+                    case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> {
+                        where.append(column).append(" = ?");
+                        params.add(Long.parseLong(value));
+                    }
+                    case Types.DECIMAL, Types.NUMERIC, Types.FLOAT, Types.REAL, Types.DOUBLE -> {
+                        where.append(column).append(" = ?");
+                        params.add(new java.math.BigDecimal(value));
+                    }
+                    case Types.DATE -> {
+                        where.append(column).append(" = ?");
+                        params.add(Date.valueOf(value));
+                    }
+                    case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+                        Date day = Date.valueOf(value);
+                        where.append(column).append(" >= ? AND ").append(column).append(" < ?");
+                        params.add(day);
+                        params.add(Date.valueOf(day.toLocalDate().plusDays(1)));
+                    }
+                    case Types.BIT, Types.BOOLEAN -> {
+                        where.append(column).append(" = ?");
+                        params.add(Boolean.parseBoolean(value) || "1".equals(value));
+                    }
+                    default -> {
+                        where.append(column).append(" LIKE ?");
+                        params.add(escapeLike(value) + "%");
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid filter value for " + column + ": " + value, e);
+            }
+        }
+        return where.toString();
+    }
+
+    private String buildOrderBy(TableQuery query, TableMeta meta) {
+        String direction = query.isAscending() ? " ASC" : " DESC";
+        String key = meta.resolve(query.getKeyColumn());
+        if (query.isSortedByKey()) {
+            return " ORDER BY " + key + direction;
+        }
+        // The key breaks ties so OFFSET pages are stable
+        return " ORDER BY " + meta.resolve(query.getSortColumn()) + direction + ", " + key + direction;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    static Object[] toRow(ResultSet rs) throws SQLException {
+        int columnCount = rs.getMetaData().getColumnCount();
+        Object[] row = new Object[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            row[i - 1] = rs.getObject(i);
+        }
+        return row;
+    }
+
+    /** Deletes a row and leaves a tombstone, so open tabs can drop it without reloading. */
     public boolean deleteRecord(String tableName, int id) {
-        try {
-            String query = "DELETE FROM " + tableName + " WHERE id = ?";
-            return executeUpdate(query, id) > 0;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String query = "DELETE FROM " + tableName + " WHERE id = ?";
+                if (executeUpdate(conn, query, id) == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                executeUpdate(conn, TOMBSTONE_SQL, tableName, id);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            if ("products".equals(tableName)) {
+                ProductCatalog.getInstance().remove(id);
+            }
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -57,8 +431,8 @@ public class DBService {
     }
     
     public boolean testConnection() {
-        try {
-            return getConnection() != null && !getConnection().isClosed();
+        try (Connection conn = getConnection()) {
+            return conn.isValid(2);
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -66,117 +440,376 @@ public class DBService {
     }
     
     public boolean recordSale(int productId, int quantitySold, int customerId) {
-        try {
-            String query = "INSERT INTO sales (productId, quantity_sold, sale_date, customer_id) VALUES (?, ?, ?, ?)";
-            return executeUpdate(query, productId, quantitySold, new Date(System.currentTimeMillis()), customerId) > 0;
+        try (Connection conn = getConnection()) {
+            Date today = new Date(System.currentTimeMillis());
+
+            conn.setAutoCommit(false);
+            try {
+                // From the row itself: the catalog may not have loaded the product yet
+                Double price = queryForObject(conn, "SELECT price FROM products WHERE id = ?",
+                        rs -> rs.getDouble(1), productId);
+                if (price == null) {
+                    throw new SQLException("Product " + productId + " does not exist");
+                }
+                String query = "INSERT INTO sales (productId, quantity_sold, sale_date, customer_id) VALUES (?, ?, ?, ?)";
+                boolean inserted = executeUpdate(conn, query, productId, quantitySold, today, customerId) > 0;
+                new SalesRollupService(this).record(conn, today, customerId,
+                        List.of(new OrderLine(productId, quantitySold, price)));
+                conn.commit();
+                invalidateOrderHistory(customerId);
+                return inserted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public boolean updateProductStock(int productId, int quantityChange) {
-        try {
-            String query = "UPDATE products SET stocks = stocks + ? WHERE id = ?";
-            return executeUpdate(query, -quantityChange, productId) > 0;
+    public boolean updateTotalSales(Date date, double amount) {
+        try (Connection conn = getConnection()) {
+            addToTotalSales(conn, date, amount);
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
-    public boolean updateTotalSales(Date date, double amount) {
-        try {
-            // Check if record exists
-            String checkQuery = "SELECT 1 FROM totalsales WHERE sale_date = ?";
-            ResultSet rs = executeQuery(checkQuery, date);
-            
-            if (rs.next()) {
-                // Update existing record
-                String updateQuery = "UPDATE totalsales SET amount = amount + ? WHERE sale_date = ?";
-                return executeUpdate(updateQuery, amount, date) > 0;
-            } else {
-                // Insert new record
-                String insertQuery = "INSERT INTO totalsales (sale_date, amount) VALUES (?, ?)";
-                return executeUpdate(insertQuery, date, amount) > 0;
+    /**
+     * Adds to a day's total with a single atomic upsert. Each day is split into
+     * {@code totalsales.shards} rows and every write picks one at random, so
+     * concurrent checkouts don't all queue on the same row lock.
+     */
+    public void addToTotalSales(Connection conn, Date date, double amount) throws SQLException {
+        int shard = ThreadLocalRandom.current().nextInt(TOTAL_SALES_SHARDS);
+        executeUpdate(conn, addTotalSalesSql, date, shard, amount);
+    }
+
+    /** A day's total across all of its shard rows. */
+    public double getTotalSales(Date date) throws SQLException {
+        Double total = queryForObject(DAY_TOTAL_SQL, rs -> rs.getDouble(1), date);
+        return total != null ? total : 0;
+    }
+
+    /** In-stock products, served from the shared {@link ProductCatalog}. */
+    public List<ProductInfo> getAvailableProducts() throws SQLException {
+        return ProductCatalog.getInstance().getAvailableProducts();
+    }
+
+    /** Reads every product straight from the database; this is what the catalog caches. */
+    public List<ProductInfo> loadAllProducts() throws SQLException {
+        return query(LOAD_PRODUCTS_SQL, DBService::toProductInfo);
+    }
+
+    /**
+     * Reads products inside the caller's transaction. Called after writing
+     * them, it returns what the transaction is about to commit, versions
+     * included, for {@link ProductCatalog#put} once it has.
+     */
+    List<ProductInfo> readProducts(Connection conn, Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return query(conn, LOAD_PRODUCTS_SQL + " WHERE id IN (" + placeholders + ")",
+                DBService::toProductInfo, ids.toArray());
+    }
+
+    private static ProductInfo toProductInfo(ResultSet rs) throws SQLException {
+        return new ProductInfo(rs.getInt("id"), rs.getString("name"), rs.getDouble("price"),
+                rs.getInt("stocks"), rs.getLong("version"));
+    }
+
+    public int addProduct(String name, double price, int stocks, int supplierId) throws SQLException {
+        String query = "INSERT INTO products (name, price, stocks, supplierId, version) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = getConnection();
+             PreparedStatement statement = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
+            try {
+                statement.setString(1, name);
+                statement.setDouble(2, price);
+                statement.setInt(3, stocks);
+                statement.setInt(4, supplierId);
+                statement.setLong(5, ProductChangeFeed.nextVersion());
+                long started = System.nanoTime();
+                long rows = -1;
+                try {
+                    rows = statement.executeUpdate();
+                } finally {
+                    metrics.record(query, started, rows);
+                }
+                int id = -1;
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        id = keys.getInt(1);
+                    }
+                }
+                if (id < 0) {
+                    // The opening stock can't be journaled without the id
+                    throw new SQLException("No generated key reported for the new product");
+                }
+                InventoryService.getInstance().record(conn, InventoryService.RECEIVING, id, stocks);
+                List<ProductInfo> written = readProducts(conn, List.of(id));
+                conn.commit();
+                written.forEach(ProductCatalog.getInstance()::put);
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
         }
     }
 
-    public List<ProductInfo> getAvailableProducts() throws SQLException {
-        List<ProductInfo> products = new ArrayList<>();
-        String query = "SELECT id, name, price, stocks FROM products WHERE stocks > 0";
-        try (ResultSet rs = executeQuery(query)) {
-            while (rs.next()) {
-                products.add(new ProductInfo(
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getDouble("price"),
-                    rs.getInt("stocks")
-                ));
+    /** Updates a product; a changed stock level is journaled as a correction. */
+    public boolean updateProduct(int id, String name, double price, int stocks, Integer supplierId) throws SQLException {
+        List<ProductInfo> written;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Integer delta = lockStockDelta(conn, id, stocks);
+                if (delta == null) {
+                    conn.rollback();
+                    return false;
+                }
+                String query = "UPDATE products SET name=?, price=?, stocks=stocks+?, supplierId=?, "
+                        + ProductChangeFeed.SET_VERSION + " WHERE id=?";
+                executeUpdate(conn, query, name, price, delta, supplierId, ProductChangeFeed.nextVersion(), id);
+                InventoryService.getInstance().record(conn, InventoryService.CORRECTION, id, delta);
+                written = readProducts(conn, List.of(id));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        written.forEach(ProductCatalog.getInstance()::put);
+        return true;
+    }
+
+    /** Updates a product's name, price and supplier, leaving its stock alone. */
+    public boolean updateProductDetails(int id, String name, double price, Integer supplierId) throws SQLException {
+        List<ProductInfo> written;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                String query = "UPDATE products SET name=?, price=?, supplierId=?, "
+                        + ProductChangeFeed.SET_VERSION + " WHERE id=?";
+                if (executeUpdate(conn, query, name, price, supplierId, ProductChangeFeed.nextVersion(), id) == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                written = readProducts(conn, List.of(id));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        written.forEach(ProductCatalog.getInstance()::put);
+        return true;
+    }
+
+    /**
+     * Sets the stock level of a product to a counted value, e.g. after a
+     * stocktake. The difference is applied and journaled as a correction;
+     * use {@link InventoryService#adjust} for deliveries.
+     */
+    public boolean setProductStock(int productId, int stocks) throws SQLException {
+        List<ProductInfo> written;
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Integer delta = lockStockDelta(conn, productId, stocks);
+                if (delta == null) {
+                    conn.rollback();
+                    return false;
+                }
+                executeUpdate(conn, "UPDATE products SET stocks = stocks + ?, " + ProductChangeFeed.SET_VERSION
+                        + " WHERE id = ?", delta, ProductChangeFeed.nextVersion(), productId);
+                InventoryService.getInstance().record(conn, InventoryService.CORRECTION, productId, delta);
+                written = readProducts(conn, List.of(productId));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         }
-        return products;
+        written.forEach(ProductCatalog.getInstance()::put);
+        return true;
+    }
+
+    /** Locks the product row and returns how far its stock is from the target, or null if it's gone. */
+    private Integer lockStockDelta(Connection conn, int productId, int targetStock) throws SQLException {
+        Integer current = queryForObject(conn, "SELECT stocks FROM products WHERE id = ? FOR UPDATE",
+                rs -> rs.getInt(1), productId);
+        return current != null ? targetStock - current : null;
     }
 
     public List<OrderHistory> getCustomerOrderHistory(int customerId) throws SQLException {
-        List<OrderHistory> history = new ArrayList<>();
-        String query = "SELECT s.id, p.name, s.quantity_sold, p.price, " +
-                      "(s.quantity_sold * p.price) as total, s.sale_date " +
-                      "FROM sales s JOIN products p ON s.productId = p.id " +
-                      "WHERE s.customer_id = ? ORDER BY s.sale_date DESC";
-        try (ResultSet rs = executeQuery(query, customerId)) {
-            while (rs.next()) {
-                history.add(new OrderHistory(
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getInt("quantity_sold"),
-                    rs.getDouble("price"),
-                    rs.getDouble("total"),
-                    rs.getDate("sale_date")
-                ));
-            }
-        }
-        return history;
+        return query(ORDER_HISTORY_SQL, rs -> new OrderHistory(
+            rs.getInt("id"),
+            rs.getString("name"),
+            rs.getInt("quantity_sold"),
+            rs.getDouble("price"),
+            rs.getDouble("total"),
+            rs.getDate("sale_date")
+        ), customerId);
+    }
+
+    /**
+     * One page of a customer's order history, newest first. Pass the previous
+     * page's {@link OrderHistoryPage#nextToken} to continue, or null to start.
+     * Uses keyset pagination on (sale_date, id), served by the
+     * idx_sales_customer_date index. The default-size first page is cached per
+     * customer until they place another order.
+     */
+    public OrderHistoryPage getCustomerOrderHistoryPage(int customerId, String continuationToken, int pageSize)
+            throws SQLException {
+        boolean cacheable = continuationToken == null && pageSize == HISTORY_PAGE_SIZE;
+        if (cacheable) {
+            OrderHistoryPage cached = RECENT_HISTORY.get(customerId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long epoch = historyEpoch.get();
+
+        RowMapper<OrderHistory> mapper = rs -> new OrderHistory(
+            rs.getInt("id"),
+            rs.getString("name"),
+            rs.getInt("quantity_sold"),
+            rs.getDouble("price"),
+            rs.getDouble("total"),
+            rs.getDate("sale_date")
+        );
+
+        // One extra row tells us whether there is another page
+        List<OrderHistory> rows;
+        if (continuationToken == null) {
+            rows = query(HISTORY_FIRST_PAGE_SQL, mapper, customerId, pageSize + 1);
+        } else {
+            Object[] after = decodeHistoryToken(continuationToken);
+            rows = query(HISTORY_NEXT_PAGE_SQL, mapper, customerId, after[0], after[0], after[1], pageSize + 1);
+        }
+
+        String nextToken = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            OrderHistory last = rows.get(pageSize - 1);
+            nextToken = encodeHistoryToken(last.saleDate, last.id);
+        }
+        OrderHistoryPage page = new OrderHistoryPage(List.copyOf(rows), nextToken);
+
+        // Skip caching if an order invalidated history while we were reading
+        if (cacheable && historyEpoch.get() == epoch) {
+            RECENT_HISTORY.put(customerId, page);
+        }
+        return page;
+    }
+
+    /** Drops the cached recent history of a customer; call after they order. */
+    public static void invalidateOrderHistory(int customerId) {
+        historyEpoch.incrementAndGet();
+        RECENT_HISTORY.remove(customerId);
+    }
+
+    /** Drops every cached history page, e.g. after a restore. */
+    public static void invalidateAllOrderHistory() {
+        historyEpoch.incrementAndGet();
+        RECENT_HISTORY.clear();
+    }
+
+    private static String encodeHistoryToken(Date saleDate, int id) {
+        String raw = saleDate.toString() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object[] decodeHistoryToken(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int colon = raw.indexOf(':');
+            return new Object[]{Date.valueOf(raw.substring(0, colon)), Integer.parseInt(raw.substring(colon + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid continuation token", e);
+        }
     }
 
+    /** Writes a full backup under {@code backup.dir}; see {@link BackupService}. */
     public boolean backupDatabase() {
-        // Implementation would depend on your database system
         try {
-            // Actual backup implementation would go here
+            new BackupService(this).backup(Paths.get(DBConfig.load().getString("backup.dir", "backups")));
             return true;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
-    
-    public void closeConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Database connection closed.");
+
+    private static class TableMeta {
+        final List<String> names;
+        final int[] types;
+
+        TableMeta(List<String> names, int[] types) {
+            this.names = names;
+            this.types = types;
+        }
+
+        int indexOf(String column) {
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).equalsIgnoreCase(column)) {
+                    return i;
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+
+        /** The column name as the database spells it; never the caller's text. */
+        String resolve(String column) {
+            return names.get(indexOf(column));
         }
     }
 
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T mapRow(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void handleRow(ResultSet rs) throws SQLException;
+    }
+
     // Helper classes for better data structure
     public static class ProductInfo {
         public final int id;
         public final String name;
         public final double price;
         public final int stock;
+        public final long version; // products.version when read, 0 if not known
 
         public ProductInfo(int id, String name, double price, int stock) {
+            this(id, name, price, stock, 0);
+        }
+
+        public ProductInfo(int id, String name, double price, int stock, long version) {
             this.id = id;
             this.name = name;
             this.price = price;
             this.stock = stock;
+            this.version = version;
+        }
+    }
+
+    public static class OrderHistoryPage {
+        public final List<OrderHistory> items;
+        public final String nextToken; // null on the last page
+
+        public OrderHistoryPage(List<OrderHistory> items, String nextToken) {
+            this.items = items;
+            this.nextToken = nextToken;
         }
     }
 
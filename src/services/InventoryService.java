@@ -0,0 +1,334 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The inventory journal: every stock change is an appended delta row in
+ * inventory_journal, written in the same transaction as the
+ * {@code stocks = stocks + ?} update it describes.
+ *
+ * Manual adjustments go through {@link #adjust}, which coalesces rapid
+ * repeated changes to the same product for {@code inventory.coalesceMs} and
+ * then writes their sum once.
+ *
+ * {@link #snapshot} folds the journal into per-product stock levels, so
+ * {@link #audit} only has to replay the journal written since the last
+ * snapshot to check that products.stocks still matches its history.
+ */
+public class InventoryService {
+    private static final Logger LOGGER = Logger.getLogger(InventoryService.class.getName());
+    private static final InventoryService INSTANCE = new InventoryService();
+
+    public static final String SALE = "SALE";
+    public static final String RECEIVING = "RECEIVING";
+    public static final String CORRECTION = "CORRECTION";
+
+    private static final String JOURNAL_SQL =
+            "INSERT INTO inventory_journal (product_id, delta, reason) VALUES (?, ?, ?)";
+    private static final String ADJUST_SQL =
+            "UPDATE products SET stocks = stocks + ?, " + ProductChangeFeed.SET_VERSION + " WHERE id = ? AND stocks + ? >= 0";
+
+    private final long coalesceMs;
+    private final long settleMs;
+    private final Map<String, PendingAdjustment> pending = new HashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "inventory-adjustments");
+        t.setDaemon(true);
+        return t;
+    });
+    private DBService dbService;
+
+    private InventoryService() {
+        DBConfig config = DBConfig.load();
+        coalesceMs = Math.max(0, config.getLong("inventory.coalesceMs", 250));
+        settleMs = Math.max(0, config.getLong("inventory.settleMs", 60000));
+    }
+
+    public static InventoryService getInstance() {
+        return INSTANCE;
+    }
+
+    /** Appends one journal row per product on the caller's transaction. Zero deltas are skipped. */
+    public void record(Connection conn, String reason, Map<Integer, Integer> deltas) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<Integer, Integer> entry : new TreeMap<>(deltas).entrySet()) {
+            if (entry.getValue() != 0) {
+                rows.add(new Object[]{entry.getKey(), entry.getValue(), reason});
+            }
+        }
+        if (!rows.isEmpty()) {
+            getDBService().executeBatch(conn, JOURNAL_SQL, rows);
+        }
+    }
+
+    public void record(Connection conn, String reason, int productId, int delta) throws SQLException {
+        record(conn, reason, Map.of(productId, delta));
+    }
+
+    /**
+     * Queues a relative stock change. Changes to the same product that arrive
+     * within the coalescing window are written as one update and one journal
+     * row. The future fails if the product is gone or the stock would go
+     * negative; in that case none of the coalesced changes are applied.
+     */
+    public CompletableFuture<Void> adjust(int productId, int delta, String reason) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                flusher.schedule(this::flush, coalesceMs, TimeUnit.MILLISECONDS);
+            }
+            // Changes of different kinds stay separate so the journal keeps each reason
+            PendingAdjustment adjustment = pending.computeIfAbsent(productId + "/" + reason,
+                    key -> new PendingAdjustment(productId, reason));
+            adjustment.delta += delta;
+            adjustment.waiters.add(done);
+        }
+        return done;
+    }
+
+    private void flush() {
+        List<PendingAdjustment> batch;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Same lock order as checkout and receiving
+        batch.sort((a, b) -> Integer.compare(a.productId, b.productId));
+
+        List<Object[]> updates = new ArrayList<>(batch.size());
+        for (PendingAdjustment adjustment : batch) {
+            updates.add(new Object[]{adjustment.delta, ProductChangeFeed.nextVersion(), adjustment.productId,
+                    adjustment.delta});
+        }
+        try (Connection conn = getDBService().getConnection()) {
+            conn.setAutoCommit(false);
+            int[] counts;
+            List<DBService.ProductInfo> written;
+            try {
+                counts = getDBService().executeBatch(conn, ADJUST_SQL, updates);
+                List<Object[]> journal = new ArrayList<>();
+                List<Integer> adjusted = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingAdjustment adjustment = batch.get(i);
+                    if (counts[i] != 0) {
+                        adjusted.add(adjustment.productId);
+                        if (adjustment.delta != 0) {
+                            journal.add(new Object[]{adjustment.productId, adjustment.delta, adjustment.reason});
+                        }
+                    }
+                }
+                if (!journal.isEmpty()) {
+                    getDBService().executeBatch(conn, JOURNAL_SQL, journal);
+                }
+                written = getDBService().readProducts(conn, adjusted);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+
+            written.forEach(ProductCatalog.getInstance()::put);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingAdjustment adjustment = batch.get(i);
+                if (counts[i] == 0) {
+                    adjustment.fail(new SQLException("Product " + adjustment.productId
+                            + " doesn't exist or would go below zero stock"));
+                } else {
+                    adjustment.complete();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not apply stock adjustments", e);
+            for (PendingAdjustment adjustment : batch) {
+                adjustment.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Folds the journal into a new snapshot: the previous snapshot's stock
+     * plus every journal row since, per product. Rows younger than
+     * {@code inventory.settleMs} are left for the next snapshot, so a
+     * transaction still in flight can't commit a row below the snapshot's
+     * high-water mark.
+     *
+     * @return the new snapshot id, or -1 if there was nothing to fold in
+     */
+    public long snapshot() throws SQLException {
+        DBService db = getDBService();
+        try (Connection conn = db.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                long[] previous = latestSnapshot(conn);
+                Timestamp now = db.queryForObject(conn, "SELECT CURRENT_TIMESTAMP", rs -> rs.getTimestamp(1));
+                Timestamp settled = new Timestamp(now.getTime() - settleMs);
+                Long highWater = db.queryForObject(conn,
+                        "SELECT MAX(id) FROM inventory_journal WHERE id > ? AND created_at <= ?",
+                        rs -> rs.getObject(1) != null ? rs.getLong(1) : null, previous[1], settled);
+                if (highWater == null) {
+                    conn.rollback();
+                    return -1;
+                }
+
+                db.executeUpdate(conn, "INSERT INTO inventory_snapshots (journal_id) VALUES (?)", highWater);
+                long snapshotId = db.queryForObject(conn,
+                        "SELECT id FROM inventory_snapshots WHERE journal_id = ?", rs -> rs.getLong(1), highWater);
+                db.executeUpdate(conn,
+                        "INSERT INTO inventory_snapshot_stock (snapshot_id, product_id, stock) " +
+                        "SELECT ?, product_id, SUM(stock) FROM (" +
+                        "SELECT product_id, stock FROM inventory_snapshot_stock WHERE snapshot_id = ? " +
+                        "UNION ALL " +
+                        "SELECT product_id, delta AS stock FROM inventory_journal WHERE id > ? AND id <= ?" +
+                        ") history GROUP BY product_id",
+                        snapshotId, previous[0], previous[1], highWater);
+                conn.commit();
+                return snapshotId;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Replays the journal since the latest snapshot and compares the result
+     * with products.stocks. The product id range is split across
+     * {@code threads} workers, each on its own connection. Orders committing
+     * while the audit runs can show up as transient drift; audit again to
+     * confirm.
+     */
+    public AuditReport audit(int threads) throws SQLException {
+        DBService db = getDBService();
+        long[] snapshot;
+        long[] range;
+        try (Connection conn = db.getConnection()) {
+            snapshot = latestSnapshot(conn);
+            range = db.queryForObject(conn, "SELECT MIN(id), MAX(id), COUNT(*) FROM products",
+                    rs -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        }
+        List<Drift> drift = new ArrayList<>();
+        if (range == null || range[2] == 0) {
+            return new AuditReport(snapshot[0], 0, drift);
+        }
+
+        int workers = Math.max(1, threads);
+        long span = (range[1] - range[0]) / workers + 1;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<List<Drift>>> parts = new ArrayList<>();
+            for (long from = range[0]; from <= range[1]; from += span) {
+                long lo = from;
+                long hi = Math.min(range[1], from + span - 1);
+                parts.add(pool.submit(() -> db.query(
+                        "SELECT p.id, p.stocks, COALESCE(s.stock, 0) + COALESCE(j.delta, 0) AS expected " +
+                        "FROM products p " +
+                        "LEFT JOIN inventory_snapshot_stock s ON s.snapshot_id = ? AND s.product_id = p.id " +
+                        "LEFT JOIN (SELECT product_id, SUM(delta) AS delta FROM inventory_journal " +
+                        "WHERE id > ? AND product_id BETWEEN ? AND ? GROUP BY product_id) j ON j.product_id = p.id " +
+                        "WHERE p.id BETWEEN ? AND ? AND p.stocks <> COALESCE(s.stock, 0) + COALESCE(j.delta, 0)",
+                        rs -> new Drift(rs.getInt("id"), rs.getLong("expected"), rs.getLong("stocks")),
+                        snapshot[0], snapshot[1], lo, hi, lo, hi)));
+            }
+            for (Future<List<Drift>> part : parts) {
+                drift.addAll(part.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Inventory audit interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("Inventory audit failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        drift.sort((a, b) -> Integer.compare(a.productId, b.productId));
+        return new AuditReport(snapshot[0], (int) range[2], drift);
+    }
+
+    /** {snapshot id, journal high-water mark} of the latest snapshot, or {-1, 0} if there is none. */
+    private long[] latestSnapshot(Connection conn) throws SQLException {
+        long[] latest = getDBService().queryForObject(conn,
+                "SELECT id, journal_id FROM inventory_snapshots ORDER BY id DESC LIMIT 1",
+                rs -> new long[]{rs.getLong(1), rs.getLong(2)});
+        return latest != null ? latest : new long[]{-1, 0};
+    }
+
+    private synchronized DBService getDBService() throws SQLException {
+        if (dbService == null) {
+            dbService = new DBService();
+        }
+        return dbService;
+    }
+
+    private static class PendingAdjustment {
+        final int productId;
+        final String reason;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        int delta;
+
+        PendingAdjustment(int productId, String reason) {
+            this.productId = productId;
+            this.reason = reason;
+        }
+
+        void complete() {
+            waiters.forEach(w -> w.complete(null));
+        }
+
+        void fail(Throwable cause) {
+            waiters.forEach(w -> w.completeExceptionally(cause));
+        }
+    }
+
+    public static class AuditReport {
+        public final long snapshotId; // -1 when the whole journal was replayed
+        public final int productsChecked;
+        public final List<Drift> drift;
+
+        public AuditReport(long snapshotId, int productsChecked, List<Drift> drift) {
+            this.snapshotId = snapshotId;
+            this.productsChecked = productsChecked;
+            this.drift = drift;
+        }
+    }
+
+    public static class Drift {
+        public final int productId;
+        public final long expected;
+        public final long actual;
+
+        public Drift(int productId, long expected, long actual) {
+            this.productId = productId;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        @Override
+        public String toString() {
+            return "Product " + productId + ": journal says " + expected + ", table says " + actual;
+        }
+    }
+}
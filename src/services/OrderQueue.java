@@ -0,0 +1,110 @@
+package services;
+
+import dbconnection.DBConfig;
+import models.Order;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Places orders in the background so the screen that took them can move on.
+ *
+ * Submitted orders wait in a bounded queue ({@code orders.queueCapacity})
+ * and are placed by {@code orders.workers} virtual threads through
+ * {@link OrderService}; each submission's future completes with the result or
+ * the error. When the database is slow the queue fills up and further
+ * submissions are refused at once rather than piling up in memory; the caller
+ * tells the cashier to retry.
+ */
+public class OrderQueue {
+    private static final Logger LOGGER = Logger.getLogger(OrderQueue.class.getName());
+    private static final OrderQueue INSTANCE = new OrderQueue();
+
+    private final BlockingQueue<Submission> queue;
+    private final AtomicInteger pending = new AtomicInteger();
+    private OrderService orderService;
+
+    private OrderQueue() {
+        DBConfig config = DBConfig.load();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getInt("orders.queueCapacity", 100)));
+        int workers = Math.max(1, config.getInt("orders.workers", 4));
+        for (int i = 0; i < workers; i++) {
+            Thread.ofVirtual().name("order-worker-" + i).start(this::work);
+        }
+    }
+
+    public static OrderQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues the order and returns at once. The future fails with a
+     * {@link RejectedExecutionException} if the queue is full.
+     */
+    public CompletableFuture<OrderService.OrderResult> submit(Order order) {
+        Submission submission = new Submission(order);
+        pending.incrementAndGet();
+        if (!queue.offer(submission)) {
+            pending.decrementAndGet();
+            submission.result.completeExceptionally(new RejectedExecutionException(
+                    "Too many orders are waiting to be placed; try again in a moment"));
+        }
+        return submission.result;
+    }
+
+    /** Orders submitted and not yet finished, including the ones being placed right now. */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void work() {
+        while (true) {
+            Submission submission;
+            try {
+                submission = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Order order = submission.order;
+            OrderService.OrderResult result = null;
+            Throwable error = null;
+            try {
+                result = getOrderService().placeOrder(order.getCustomerId(), order.getLines());
+            } catch (Throwable e) {
+                // Errors too: the worker must survive, and the caller is waiting on this future
+                LOGGER.log(Level.WARNING, "Order for customer " + order.getCustomerId() + " failed", e);
+                error = e;
+            } finally {
+                // Count it done before completing, so callbacks see the queue as they'd expect
+                pending.decrementAndGet();
+            }
+            if (error != null) {
+                submission.result.completeExceptionally(error);
+            } else {
+                submission.result.complete(result);
+            }
+        }
+    }
+
+    private synchronized OrderService getOrderService() throws SQLException {
+        if (orderService == null) {
+            orderService = new OrderService(new DBService());
+        }
+        return orderService;
+    }
+
+    private static class Submission {
+        final Order order;
+        final CompletableFuture<OrderService.OrderResult> result = new CompletableFuture<>();
+
+        Submission(Order order) {
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package services;
+
+import models.OrderLine;
+import services.StockReservationService.LineFailure;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The checkout transaction: reserve stock, journal it, record the sale lines,
+ * and add the order to the day's total and the sales rollups, all or nothing.
+ */
+public class OrderService {
+    static final String RECORD_SALE_SQL =
+            "INSERT INTO sales (productId, quantity_sold, sale_date, customer_id) VALUES (?, ?, ?, ?)";
+
+    private final DBService dbService;
+    private final StockReservationService reservations;
+    private final SalesRollupService rollups;
+    private final StockLedger ledger = StockLedger.getInstance();
+
+    public OrderService(DBService dbService) {
+        this.dbService = dbService;
+        this.reservations = new StockReservationService(dbService);
+        this.rollups = new SalesRollupService(dbService);
+    }
+
+    public OrderResult placeOrder(int customerId, List<OrderLine> lines) throws SQLException {
+        // Check every line as given: merging would let -5 and 6 of one product pass as 1
+        for (OrderLine line : lines) {
+            if (line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive for product " + line.getProductId());
+            }
+        }
+        List<OrderLine> merged = StockReservationService.mergeByProduct(lines);
+        for (OrderLine line : merged) {
+            if (line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity is too large for product " + line.getProductId());
+            }
+        }
+        if (merged.isEmpty()) {
+            throw new IllegalArgumentException("An order needs at least one line");
+        }
+
+        // Cheap in-memory check first: don't open a transaction for stock we know isn't there
+        List<OrderLine> refused = ledger.tryHold(merged);
+        if (!refused.isEmpty()) {
+            List<LineFailure> failures = new ArrayList<>();
+            for (OrderLine line : refused) {
+                DBService.ProductInfo product = ProductCatalog.getInstance().get(line.getProductId());
+                failures.add(new LineFailure(line.getProductId(), line.getQuantity(),
+                        product != null ? product.stock : 0, "Not enough stock"));
+            }
+            return OrderResult.failed(failures);
+        }
+
+        try {
+            double total = 0;
+            for (OrderLine line : merged) {
+                total += line.getSubtotal();
+            }
+
+            List<DBService.ProductInfo> written;
+            try (Connection conn = dbService.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    List<LineFailure> failures = reservations.reserve(conn, merged);
+                    if (!failures.isEmpty()) {
+                        conn.rollback();
+                        refreshCatalog(conn, failures);
+                        return OrderResult.failed(failures);
+                    }
+
+                    Map<Integer, Integer> deltas = new HashMap<>();
+                    for (OrderLine line : merged) {
+                        deltas.put(line.getProductId(), -line.getQuantity());
+                    }
+                    InventoryService.getInstance().record(conn, InventoryService.SALE, deltas);
+
+                    Date today = new Date(System.currentTimeMillis());
+                    recordSales(conn, customerId, today, merged);
+                    rollups.record(conn, today, customerId, merged);
+                    dbService.addToTotalSales(conn, today, total);
+                    written = dbService.readProducts(conn, deltas.keySet());
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+
+            DBService.invalidateOrderHistory(customerId);
+            written.forEach(ProductCatalog.getInstance()::put);
+            return OrderResult.succeeded(total);
+        } finally {
+            ledger.release(merged);
+        }
+    }
+
+    private void recordSales(Connection conn, int customerId, Date saleDate, List<OrderLine> lines) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (OrderLine line : lines) {
+            rows.add(new Object[]{line.getProductId(), line.getQuantity(), saleDate, customerId});
+        }
+        dbService.executeBatch(conn, RECORD_SALE_SQL, rows);
+    }
+
+    /** The database knew better than the cache; bring the failed products up to date. */
+    private void refreshCatalog(Connection conn, List<LineFailure> failures) throws SQLException {
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        for (LineFailure failure : failures) {
+            if (failure.available < 0) {
+                catalog.remove(failure.productId);
+            }
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (LineFailure failure : failures) {
+            if (failure.available >= 0) {
+                ids.add(failure.productId);
+            }
+        }
+        dbService.readProducts(conn, ids).forEach(catalog::put);
+    }
+
+    public static class OrderResult {
+        public final boolean success;
+        public final double total;
+        public final List<LineFailure> failures;
+
+        private OrderResult(boolean success, double total, List<LineFailure> failures) {
+            this.success = success;
+            this.total = total;
+            this.failures = failures;
+        }
+
+        static OrderResult succeeded(double total) {
+            return new OrderResult(true, total, Collections.emptyList());
+        }
+
+        static OrderResult failed(List<LineFailure> failures) {
+            return new OrderResult(false, 0, Collections.unmodifiableList(failures));
+        }
+    }
+}
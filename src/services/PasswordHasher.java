@@ -0,0 +1,128 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.logging.Logger;
+
+/**
+ * Salted PBKDF2 password hashes, stored as {@code pbkdf2$<iterations>$<salt>$<hash>}.
+ *
+ * The iteration count comes from {@code auth.hashIterations}. When that is 0
+ * (the default) it is calibrated once per process so that one hash takes about
+ * {@code auth.hashTargetMs} on this machine, but never fewer than
+ * {@link #MIN_ITERATIONS}. Stored values that aren't in this format are
+ * treated as legacy plaintext passwords and report {@link #needsRehash}, as
+ * do hashes below the configured count, or below {@link #MIN_ITERATIONS}
+ * when calibrating. A calibrated count varies between restarts and machines,
+ * so it never triggers a rehash by itself: terminals would keep re-hashing
+ * each other's accounts on every login. Pin it to have old hashes upgraded.
+ */
+public class PasswordHasher {
+    private static final Logger LOGGER = Logger.getLogger(PasswordHasher.class.getName());
+    private static final PasswordHasher INSTANCE = new PasswordHasher();
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    static final int MIN_ITERATIONS = 50000;
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+    private final int rehashBelow;
+
+    private PasswordHasher() {
+        DBConfig config = DBConfig.load();
+        int configured = config.getInt("auth.hashIterations", 0);
+        iterations = configured > 0 ? configured : calibrate(config.getLong("auth.hashTargetMs", 100));
+        rehashBelow = configured > 0 ? configured : MIN_ITERATIONS;
+    }
+
+    public static PasswordHasher getInstance() {
+        return INSTANCE;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /** Checks a password against a stored hash, or against a legacy plaintext value. */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** True for plaintext values and hashes below the configured work factor (or the minimum). */
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < rehashBelow;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static int calibrate(long targetMs) {
+        byte[] salt = new byte[SALT_BYTES];
+        int sample = 20000;
+        pbkdf2("warm-up", salt, sample); // let the JIT compile the hot loop first
+        long started = System.nanoTime();
+        pbkdf2("calibration", salt, sample);
+        double nanosPerIteration = (double) (System.nanoTime() - started) / sample;
+        long fitted = (long) (targetMs * 1_000_000L / Math.max(nanosPerIteration, 1));
+        int chosen = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_ITERATIONS, fitted));
+        LOGGER.info("Password hashing calibrated to " + chosen + " iterations (~" + targetMs
+                + " ms); set auth.hashIterations=" + chosen + " to use it on every terminal and upgrade older hashes");
+        return chosen;
+    }
+}
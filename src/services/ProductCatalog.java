@@ -0,0 +1,173 @@
+package services;
+
+import dbconnection.DBConfig;
+import services.DBService.ProductInfo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide cache of the products table, keyed by product id.
+ *
+ * Every screen that changes products in this process puts the rows it wrote,
+ * so customer dashboards can list and refresh products without a query. Each
+ * entry carries its row's {@code version}, and an older one never replaces a
+ * newer one, whichever of the writer and {@link ProductChangeFeed} gets there
+ * first.
+ * Changes made by other terminals are picked up by reloading the whole table
+ * once the cache is older than {@code catalog.refreshMs}; the reload runs in
+ * the background while callers keep getting the current contents.
+ *
+ * The catalog also keeps a {@link ProductSearchIndex} of the product names,
+ * updated with every change, for {@link #search}.
+ */
+public class ProductCatalog {
+    private static final Logger LOGGER = Logger.getLogger(ProductCatalog.class.getName());
+    private static final ProductCatalog INSTANCE = new ProductCatalog();
+
+    private final Map<Integer, ProductInfo> products = new ConcurrentHashMap<>();
+    private final ProductSearchIndex searchIndex = new ProductSearchIndex();
+    private final long refreshIntervalMs = DBConfig.load().getLong("catalog.refreshMs", 30000);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "product-catalog-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Set<Integer> touchedDuringReload = ConcurrentHashMap.newKeySet();
+    private volatile boolean reloading;
+    private volatile long loadedAt;
+    private volatile boolean loaded;
+
+    private ProductCatalog() {
+    }
+
+    public static ProductCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /** Products with stock left, ordered by id. Loads the table on first use. */
+    public List<ProductInfo> getAvailableProducts() throws SQLException {
+        ensureLoaded();
+        List<ProductInfo> available = new ArrayList<>();
+        for (ProductInfo product : products.values()) {
+            if (product.stock > 0) {
+                available.add(product);
+            }
+        }
+        available.sort(Comparator.comparingInt(p -> p.id));
+        return available;
+    }
+
+    /** The cached product, or null if it isn't known (yet). */
+    public ProductInfo get(int productId) throws SQLException {
+        ensureLoaded();
+        return products.get(productId);
+    }
+
+    /** Ids of the products whose name contains every word of the query, from memory. */
+    public Set<Integer> search(String query) throws SQLException {
+        ensureLoaded();
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Caches the product unless a newer version of it is already cached.
+     * Writers put what their transaction wrote, read back with its version,
+     * so a change feed poll that already delivered a later state of the row
+     * isn't overwritten by an older one, or counted twice.
+     */
+    public void put(ProductInfo product) {
+        touched(product.id);
+        putIfNotOlder(product);
+    }
+
+    public void remove(int productId) {
+        touched(productId);
+        products.remove(productId);
+        searchIndex.remove(productId);
+    }
+
+
+    /** Forces the next read to go to the database. */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /** Reloads the whole table now, on the calling thread. */
+    public synchronized void reload() throws SQLException {
+        long started = System.currentTimeMillis();
+        touchedDuringReload.clear();
+        reloading = true;
+        try {
+            Map<Integer, ProductInfo> byId = new HashMap<>();
+            for (ProductInfo product : new DBService().loadAllProducts()) {
+                byId.put(product.id, product);
+            }
+            // Local writes that landed while the query ran are newer than what it read
+            for (Integer id : products.keySet()) {
+                if (!byId.containsKey(id) && !touchedDuringReload.contains(id)) {
+                    products.remove(id);
+                    searchIndex.remove(id);
+                }
+            }
+            for (ProductInfo product : byId.values()) {
+                if (!touchedDuringReload.contains(product.id)) {
+                    putIfNotOlder(product);
+                }
+            }
+            loadedAt = started;
+            loaded = true;
+        } finally {
+            reloading = false;
+        }
+    }
+
+    private void putIfNotOlder(ProductInfo product) {
+        products.compute(product.id, (id, cached) -> {
+            if (cached != null && cached.version > product.version) {
+                return cached;
+            }
+            searchIndex.put(id, product.name); // no-op unless the name changed
+            return product;
+        });
+    }
+
+    private void touched(int productId) {
+        if (reloading) {
+            touchedDuringReload.add(productId);
+        }
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        } else if (System.currentTimeMillis() - loadedAt > refreshIntervalMs
+                && refreshing.compareAndSet(false, true)) {
+            refresher.submit(() -> {
+                try {
+                    reload();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Could not refresh product catalog", e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+}
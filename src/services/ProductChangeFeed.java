@@ -0,0 +1,157 @@
+package services;
+
+import dbconnection.DBConfig;
+import services.DBService.ProductInfo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pushes product changes made on any terminal to the screens of this one.
+ *
+ * Every write to a product sets {@code products.version} with
+ * {@link #SET_VERSION} and {@link #nextVersion()}: a clock in microseconds
+ * that never repeats within a process, and never lowers a row's version.
+ * One shared poller reads the rows whose version is above the highest it has
+ * seen, every {@code feed.pollMs}, and hands them to every subscriber; it
+ * also keeps {@link ProductCatalog} up to date with them.
+ *
+ * Versions are assigned before commit and by different terminals' clocks, so
+ * a row can become visible with a version just below one already seen. Each
+ * poll therefore reaches back {@code feed.overlapMs} further than the
+ * watermark, and rows it has already delivered at that version are dropped.
+ * The overlap has to cover the longest product transaction plus the clock
+ * difference between terminals. Deleted products are not reported.
+ */
+public class ProductChangeFeed {
+    private static final Logger LOGGER = Logger.getLogger(ProductChangeFeed.class.getName());
+    private static final ProductChangeFeed INSTANCE = new ProductChangeFeed();
+    private static final AtomicLong lastVersion = new AtomicLong();
+
+    /** The SET clause for a product write; bind {@link #nextVersion()} to it. */
+    public static final String SET_VERSION = "version = GREATEST(version + 1, ?)";
+    static final String CHANGES_SQL =
+            "SELECT id, name, price, stocks, version FROM products WHERE version > ? ORDER BY version";
+
+    private final long pollMs;
+    private final long overlapMicros;
+    private final List<Consumer<List<ProductInfo>>> subscribers = new CopyOnWriteArrayList<>();
+    // Version each recently changed product was delivered at, to drop repeats from the overlap
+    private final Map<Integer, Long> delivered = new HashMap<>();
+    private ScheduledExecutorService poller;
+    private long watermark = -1;
+    private DBService dbService;
+
+    private ProductChangeFeed() {
+        DBConfig config = DBConfig.load();
+        pollMs = Math.max(100, config.getLong("feed.pollMs", 2000));
+        overlapMicros = Math.max(0, config.getLong("feed.overlapMs", 5000)) * 1000;
+    }
+
+    public static ProductChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /** A version for a product write, later than any this process handed out before. */
+    public static long nextVersion() {
+        long now = System.currentTimeMillis() * 1000;
+        return lastVersion.updateAndGet(last -> Math.max(now, last + 1));
+    }
+
+    /**
+     * Calls the subscriber with each batch of changed products, on the poller
+     * thread. Starts the poller on first use.
+     */
+    public synchronized void subscribe(Consumer<List<ProductInfo>> subscriber) {
+        subscribers.add(subscriber);
+        if (poller == null) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "product-change-feed");
+                t.setDaemon(true);
+                return t;
+            });
+            poller.scheduleWithFixedDelay(this::poll, 0, pollMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void unsubscribe(Consumer<List<ProductInfo>> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private void poll() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            List<ProductInfo> changed = readChanges();
+            if (changed.isEmpty()) {
+                return;
+            }
+            ProductCatalog catalog = ProductCatalog.getInstance();
+            for (ProductInfo product : changed) {
+                catalog.put(product);
+            }
+            List<ProductInfo> batch = Collections.unmodifiableList(changed);
+            for (Consumer<List<ProductInfo>> subscriber : subscribers) {
+                try {
+                    subscriber.accept(batch);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Product change subscriber failed", e);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not poll product changes", e);
+        }
+    }
+
+    // Only the poller thread gets here
+    private List<ProductInfo> readChanges() throws SQLException {
+        if (watermark < 0) {
+            // Start from now: subscribers load the current state themselves
+            Long max = getDBService().queryForObject("SELECT MAX(version) FROM products", rs -> {
+                long value = rs.getLong(1);
+                return rs.wasNull() ? 0L : value;
+            });
+            watermark = max != null ? max : 0;
+            return Collections.emptyList();
+        }
+
+        List<ProductInfo> changed = new ArrayList<>();
+        long[] highest = {watermark};
+        getDBService().forEachRow(CHANGES_SQL, rs -> {
+            int id = rs.getInt("id");
+            long version = rs.getLong("version");
+            highest[0] = Math.max(highest[0], version);
+            Long seen = delivered.get(id);
+            if (seen == null || seen < version) {
+                delivered.put(id, version);
+                changed.add(new ProductInfo(id, rs.getString("name"), rs.getDouble("price"), rs.getInt("stocks"), version));
+            }
+        }, Math.max(0, watermark - overlapMicros));
+        watermark = highest[0];
+
+        // Rows below the reach-back can only come back with a higher version
+        long reach = watermark - overlapMicros;
+        delivered.values().removeIf(version -> version <= reach);
+        return changed;
+    }
+
+    private synchronized DBService getDBService() throws SQLException {
+        if (dbService == null) {
+            dbService = new DBService();
+        }
+        return dbService;
+    }
+}
@@ -0,0 +1,191 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of product names for as-you-type search, kept by
+ * {@link ProductCatalog} and updated with it one product at a time.
+ *
+ * A query is split into words and a product matches when its name contains
+ * every one of them, ignoring case. Words of one or two characters are looked
+ * up in a prefix trie of the name's words (each node holds the ids below it),
+ * so "ch" finds "Chips" and "Dark Chocolate" but not "Peach". Longer words may
+ * match anywhere in the name; they narrow the candidates to the ids indexed
+ * under their least common trigram. A search walks the smallest candidate set
+ * only and checks the other words on each id, so its cost follows the rarest
+ * word rather than the catalog size. Nothing touches the database.
+ */
+public class ProductSearchIndex {
+    private static final int GRAM = 3;
+
+    private final Map<Integer, String> names = new HashMap<>();
+    private final TrieNode root = new TrieNode();
+    private final Map<String, Set<Integer>> trigrams = new HashMap<>();
+
+    ProductSearchIndex() {
+    }
+
+    /** Indexes the product under its name, replacing what was indexed for it before. */
+    synchronized void put(int productId, String name) {
+        String normalized = normalize(name);
+        String old = names.put(productId, normalized);
+        if (normalized.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            unindex(productId, old);
+        }
+        for (String word : words(normalized)) {
+            TrieNode node = root;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.children.computeIfAbsent(word.charAt(i), c -> new TrieNode());
+                node.ids.add(productId);
+            }
+        }
+        for (String gram : grams(normalized)) {
+            trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(productId);
+        }
+    }
+
+    synchronized void remove(int productId) {
+        String old = names.remove(productId);
+        if (old != null) {
+            unindex(productId, old);
+        }
+    }
+
+    /** Ids of the products whose name contains every word of the query; every product for a blank query. */
+    public synchronized Set<Integer> search(String query) {
+        List<String> words = words(normalize(query));
+        if (words.isEmpty()) {
+            return new HashSet<>(names.keySet());
+        }
+        // Walk the smallest candidate set and test the other words on each id
+        List<Set<Integer>> prefixSets = new ArrayList<>();
+        Set<Integer> smallest = null;
+        for (String word : words) {
+            Set<Integer> ids = word.length() < GRAM ? prefixed(word) : rarestTrigram(word);
+            if (ids.isEmpty()) {
+                return Collections.emptySet();
+            }
+            if (word.length() < GRAM) {
+                prefixSets.add(ids);
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        Set<Integer> result = new HashSet<>();
+        for (Integer id : smallest) {
+            if (matches(id, words, prefixSets)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return names.size();
+    }
+
+    private boolean matches(Integer id, List<String> words, List<Set<Integer>> prefixSets) {
+        for (Set<Integer> ids : prefixSets) {
+            if (!ids.contains(id)) {
+                return false;
+            }
+        }
+        String name = names.get(id);
+        for (String word : words) {
+            if (word.length() >= GRAM && !name.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Set<Integer> prefixed(String prefix) {
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node != null ? node.ids : Collections.emptySet();
+    }
+
+    // The ids with the word's least common trigram: every name containing the word is among them
+    private Set<Integer> rarestTrigram(String word) {
+        Set<Integer> rarest = null;
+        for (String gram : grams(word)) {
+            Set<Integer> ids = trigrams.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            if (rarest == null || ids.size() < rarest.size()) {
+                rarest = ids;
+            }
+        }
+        return rarest;
+    }
+
+    private void unindex(int productId, String name) {
+        for (String word : words(name)) {
+            unindexWord(root, word, 0, productId);
+        }
+        for (String gram : grams(name)) {
+            Set<Integer> ids = trigrams.get(gram);
+            if (ids != null && ids.remove(productId) && ids.isEmpty()) {
+                trigrams.remove(gram);
+            }
+        }
+    }
+
+    // Drops the id along the word's path and prunes the nodes left empty
+    private static void unindexWord(TrieNode node, String word, int depth, int productId) {
+        if (depth == word.length()) {
+            return;
+        }
+        TrieNode child = node.children.get(word.charAt(depth));
+        if (child == null) {
+            return;
+        }
+        child.ids.remove(productId);
+        if (child.ids.isEmpty()) {
+            node.children.remove(word.charAt(depth));
+        } else {
+            unindexWord(child, word, depth + 1, productId);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).trim();
+    }
+
+    private static List<String> words(String normalized) {
+        List<String> words = new ArrayList<>();
+        for (String word : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>();
+        final Set<Integer> ids = new HashSet<>();
+    }
+}
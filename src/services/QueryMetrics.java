@@ -0,0 +1,252 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Latency, row and error counts for every statement run through
+ * {@link DBService}, grouped by SQL template.
+ *
+ * The template is the statement with literals replaced by {@code ?} and
+ * placeholder lists collapsed, so "IN (?, ?, ?)" with any number of values is
+ * one entry. Latencies go into log-linear histograms (16 buckets per power of
+ * two, so percentiles are within ~6%), updated without locks. At most
+ * {@code metrics.maxTemplates} templates are tracked; later ones are counted
+ * together under {@link #OTHER}. Set {@code metrics.enabled=false} to turn
+ * recording off.
+ */
+public class QueryMetrics {
+    public static final String OTHER = "(other statements)";
+
+    private static final QueryMetrics INSTANCE = new QueryMetrics();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MAX_TEMPLATE_LENGTH = 500;
+
+    private final boolean enabled;
+    private final int maxTemplates;
+    private final Map<String, QueryStats> byTemplate = new ConcurrentHashMap<>();
+    // Raw SQL to its template's stats, so the regexes run once per distinct string
+    private final Map<String, QueryStats> bySql = new ConcurrentHashMap<>();
+    private final QueryStats other = new QueryStats(OTHER);
+
+    private QueryMetrics() {
+        DBConfig config = DBConfig.load();
+        this.enabled = config.getBoolean("metrics.enabled", true);
+        this.maxTemplates = Math.max(1, config.getInt("metrics.maxTemplates", 500));
+    }
+
+    public static QueryMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records one statement that started at {@code startNanos}
+     * ({@link System#nanoTime()}). {@code rows} is the number of rows read or
+     * affected, or negative when the statement failed.
+     */
+    public void record(String sql, long startNanos, long rows) {
+        if (!enabled || sql == null) {
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        statsFor(sql).add(micros, rows);
+    }
+
+    /** Stats of every template seen since the last reset, slowest total time first. */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> result = new ArrayList<>(byTemplate.size() + 1);
+        for (QueryStats stats : byTemplate.values()) {
+            if (stats.count.sum() > 0) {
+                result.add(stats.snapshot());
+            }
+        }
+        if (other.count.sum() > 0) {
+            result.add(other.snapshot());
+        }
+        result.sort(Comparator.comparingDouble((Snapshot s) -> s.totalMs).reversed());
+        return result;
+    }
+
+    /** Zeroes every counter; the templates themselves are kept. */
+    public void reset() {
+        for (QueryStats stats : byTemplate.values()) {
+            stats.clear();
+        }
+        other.clear();
+    }
+
+    private QueryStats statsFor(String sql) {
+        QueryStats stats = bySql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        String template = template(sql);
+        stats = byTemplate.get(template);
+        if (stats == null) {
+            stats = byTemplate.size() < maxTemplates
+                    ? byTemplate.computeIfAbsent(template, QueryStats::new)
+                    : other;
+        }
+        if (bySql.size() < maxTemplates * 4) {
+            bySql.put(sql, stats);
+        }
+        return stats;
+    }
+
+    static String template(String sql) {
+        String template = STRING_LITERAL.matcher(sql).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = PLACEHOLDER_LIST.matcher(template).replaceAll("?, ...");
+        template = WHITESPACE.matcher(template).replaceAll(" ").trim();
+        return template.length() > MAX_TEMPLATE_LENGTH ? template.substring(0, MAX_TEMPLATE_LENGTH) + "..." : template;
+    }
+
+    private static class QueryStats {
+        final String template;
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final AtomicLong maxMicros = new AtomicLong();
+        final Histogram latency = new Histogram();
+
+        QueryStats(String template) {
+            this.template = template;
+        }
+
+        void add(long micros, long rowCount) {
+            count.increment();
+            if (rowCount < 0) {
+                errors.increment();
+            } else {
+                rows.add(rowCount);
+            }
+            totalMicros.add(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+            latency.add(micros);
+        }
+
+        void clear() {
+            count.reset();
+            errors.reset();
+            rows.reset();
+            totalMicros.reset();
+            maxMicros.set(0);
+            latency.clear();
+        }
+
+        Snapshot snapshot() {
+            long max = maxMicros.get();
+            return new Snapshot(template, count.sum(), errors.sum(), rows.sum(),
+                    totalMicros.sum() / 1000.0,
+                    Math.min(latency.percentile(0.50), max) / 1000.0,
+                    Math.min(latency.percentile(0.99), max) / 1000.0,
+                    max / 1000.0);
+        }
+    }
+
+    /**
+     * Log-linear histogram of microsecond values: exact below 32, then 16
+     * buckets for every power of two up to about 19 hours.
+     */
+    private static class Histogram {
+        private static final int LINEAR = 32;
+        private static final int SUB_BUCKETS = 16;
+        private static final int MAX_EXPONENT = 36;
+
+        private final AtomicLongArray counts = new AtomicLongArray(LINEAR + (MAX_EXPONENT - 4) * SUB_BUCKETS);
+
+        void add(long micros) {
+            counts.incrementAndGet(index(micros));
+        }
+
+        void clear() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+        }
+
+        /** The highest value in the bucket holding the given fraction of samples. */
+        long percentile(double fraction) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(total * fraction));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length() - 1);
+        }
+
+        private static int index(long micros) {
+            if (micros < LINEAR) {
+                return (int) Math.max(0, micros);
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+            int sub = (int) ((micros >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+            if (exponent == MAX_EXPONENT) {
+                sub = SUB_BUCKETS - 1;
+            }
+            return LINEAR + (exponent - 5) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int exponent = (index - LINEAR) / SUB_BUCKETS + 5;
+            int sub = (index - LINEAR) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 4)) - 1;
+        }
+    }
+
+    /** Totals for one template. Times are in milliseconds. */
+    public static class Snapshot {
+        public final String template;
+        public final long count;
+        public final long errors;
+        public final long rows;
+        public final double totalMs;
+        public final double p50Ms;
+        public final double p99Ms;
+        public final double maxMs;
+
+        public Snapshot(String template, long count, long errors, long rows,
+                        double totalMs, double p50Ms, double p99Ms, double maxMs) {
+            this.template = template;
+            this.count = count;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalMs = totalMs;
+            this.p50Ms = p50Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+        }
+
+        public double getErrorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package services;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs EXPLAIN for the application's hot queries with sample values taken
+ * from the database, to check after a migration or on a new install that
+ * they use their indexes. A plan is flagged when it reads a whole table where
+ * an index was expected (MySQL {@code type = ALL}, H2 {@code tableScan}).
+ */
+public class QueryPlanReport {
+    private final DBService dbService;
+
+    public QueryPlanReport(DBService dbService) {
+        this.dbService = dbService;
+    }
+
+    public List<Plan> explainAll() throws SQLException {
+        Integer customerId = dbService.queryForObject("SELECT MIN(id) FROM customers", rs -> rs.getInt(1));
+        String username = dbService.queryForObject("SELECT MIN(username) FROM customers", rs -> rs.getString(1));
+        Integer productId = dbService.queryForObject("SELECT MIN(id) FROM products", rs -> rs.getInt(1));
+        int customer = customerId != null ? customerId : 1;
+        int product = productId != null ? productId : 1;
+        String name = username != null ? username : "";
+        Date today = Date.valueOf(LocalDate.now());
+        Date monthAgo = Date.valueOf(LocalDate.now().minusDays(30));
+
+        List<Plan> plans = new ArrayList<>();
+        try (Connection conn = dbService.getConnection()) {
+            // The catalog is loaded whole on purpose
+            plans.add(explain(conn, "Product catalog load", DBService.LOAD_PRODUCTS_SQL, true));
+            plans.add(explain(conn, "Order history (full)", DBService.ORDER_HISTORY_SQL, false, customer));
+            plans.add(explain(conn, "Order history (first page)", DBService.HISTORY_FIRST_PAGE_SQL, false,
+                    customer, DBService.HISTORY_PAGE_SIZE + 1));
+            plans.add(explain(conn, "Order history (next page)", DBService.HISTORY_NEXT_PAGE_SQL, false,
+                    customer, today, today, Integer.MAX_VALUE, DBService.HISTORY_PAGE_SIZE + 1));
+            plans.add(explain(conn, "Login lookup", AuthService.LOOKUP_SQL, false, name, name));
+            plans.add(explain(conn, "Username exists", UsernameRegistry.EXISTS_SQL, false, name, name));
+            plans.add(explain(conn, "Stock reservation", StockReservationService.RESERVE_SQL, false,
+                    1, 0L, product, 1));
+            plans.add(explain(conn, "Product change feed", ProductChangeFeed.CHANGES_SQL, false, Long.MAX_VALUE));
+            plans.add(explain(conn, "Deleted rows since", TableChangeTracker.TOMBSTONES_SQL, false, "products", 0L));
+            plans.add(explain(conn, "Day's sales total", DBService.DAY_TOTAL_SQL, false, today));
+            plans.add(explain(conn, "Revenue by product report", SalesRollupService.REVENUE_BY_PRODUCT_SQL, false,
+                    monthAgo, today));
+            plans.add(explain(conn, "Sales by customer report", SalesRollupService.SALES_BY_CUSTOMER_SQL, false,
+                    monthAgo, today));
+            plans.add(explain(conn, "Monthly trend report", SalesRollupService.MONTHLY_TREND_SQL, false,
+                    monthAgo, today));
+        }
+        return plans;
+    }
+
+    private static Plan explain(Connection conn, String name, String sql, boolean scanExpected, Object... params) {
+        List<String> lines = new ArrayList<>();
+        boolean fullScan = false;
+        try (PreparedStatement statement = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    StringBuilder line = new StringBuilder();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        String column = meta.getColumnLabel(i);
+                        String value = rs.getString(i);
+                        if (meta.getColumnCount() == 1) {
+                            line.append(value); // H2: one plan text column
+                            fullScan |= value != null && value.contains(".tableScan");
+                        } else {
+                            if (i > 1) {
+                                line.append(", ");
+                            }
+                            line.append(column).append('=').append(value);
+                            fullScan |= "type".equalsIgnoreCase(column) && "ALL".equals(value);
+                        }
+                    }
+                    lines.add(line.toString());
+                }
+            }
+        } catch (SQLException e) {
+            return new Plan(name, sql, lines, false, scanExpected, e.getMessage());
+        }
+        return new Plan(name, sql, lines, fullScan, scanExpected, null);
+    }
+
+    public static class Plan {
+        public final String name;
+        public final String sql;
+        public final List<String> lines;
+        public final boolean fullScan;
+        public final boolean scanExpected;
+        public final String error;
+
+        public Plan(String name, String sql, List<String> lines, boolean fullScan, boolean scanExpected, String error) {
+            this.name = name;
+            this.sql = sql;
+            this.lines = lines;
+            this.fullScan = fullScan;
+            this.scanExpected = scanExpected;
+            this.error = error;
+        }
+
+        /** A full table scan where an index should have been used. */
+        public boolean isSuspect() {
+            return fullScan && !scanExpected;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(isSuspect() ? "[FULL SCAN] " : error != null ? "[ERROR] " : "[ok] ").append(name).append('\n');
+            text.append("  ").append(sql).append('\n');
+            if (error != null) {
+                text.append("  ").append(error).append('\n');
+            }
+            for (String line : lines) {
+                text.append("  ").append(line.replace("\n", "\n  ")).append('\n');
+            }
+            return text.toString();
+        }
+    }
+}
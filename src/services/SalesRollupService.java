@@ -0,0 +1,206 @@
+package services;
+
+import models.OrderLine;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the sales_daily_product and sales_daily_customer rollups in step with
+ * the sales table, and answers reports from them.
+ *
+ * {@link #record} runs inside the checkout transaction, so a rollup can never
+ * disagree with the sales it summarizes. {@link #rebuild} recomputes both
+ * tables from scratch; run it while no orders are being taken.
+ */
+public class SalesRollupService {
+    static final String REVENUE_BY_PRODUCT_SQL =
+            "SELECT r.product_id, p.name, SUM(r.units) AS units, SUM(r.revenue) AS revenue " +
+            "FROM sales_daily_product r LEFT JOIN products p ON p.id = r.product_id " +
+            "WHERE r.sale_date BETWEEN ? AND ? " +
+            "GROUP BY r.product_id, p.name ORDER BY revenue DESC";
+    static final String SALES_BY_CUSTOMER_SQL =
+            "SELECT r.customer_id, c.username, SUM(r.units) AS units, SUM(r.revenue) AS revenue " +
+            "FROM sales_daily_customer r LEFT JOIN customers c ON c.id = r.customer_id " +
+            "WHERE r.sale_date BETWEEN ? AND ? " +
+            "GROUP BY r.customer_id, c.username ORDER BY revenue DESC";
+    static final String MONTHLY_TREND_SQL =
+            "SELECT YEAR(sale_date) AS y, MONTH(sale_date) AS m, SUM(units), SUM(revenue) " +
+            "FROM sales_daily_product WHERE sale_date BETWEEN ? AND ? " +
+            "GROUP BY YEAR(sale_date), MONTH(sale_date) ORDER BY y, m";
+    private static final String CHUNK_SQL =
+            "SELECT s.sale_date, s.productId, s.customer_id, SUM(s.quantity_sold) AS units, " +
+            "SUM(s.quantity_sold * COALESCE(p.price, 0)) AS revenue " +
+            "FROM sales s LEFT JOIN products p ON s.productId = p.id " +
+            "WHERE s.id BETWEEN ? AND ? " +
+            "GROUP BY s.sale_date, s.productId, s.customer_id";
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DBService dbService;
+    private final String addProductSql;
+    private final String addCustomerSql;
+
+    public SalesRollupService(DBService dbService) {
+        this.dbService = dbService;
+        this.addProductSql = dbService.upsertAddingSql("sales_daily_product",
+                new String[]{"sale_date", "product_id"}, new String[]{"units", "revenue"});
+        this.addCustomerSql = dbService.upsertAddingSql("sales_daily_customer",
+                new String[]{"sale_date", "customer_id"}, new String[]{"units", "revenue"});
+    }
+
+    /** Adds an order's lines to both rollups on the caller's transaction. */
+    public void record(Connection conn, Date saleDate, int customerId, List<OrderLine> lines) throws SQLException {
+        List<OrderLine> byProduct = StockReservationService.mergeByProduct(lines);
+        List<Object[]> productRows = new ArrayList<>();
+        long units = 0;
+        double revenue = 0;
+        for (OrderLine line : byProduct) {
+            productRows.add(new Object[]{saleDate, line.getProductId(), line.getQuantity(), line.getSubtotal()});
+            units += line.getQuantity();
+            revenue += line.getSubtotal();
+        }
+        // Product rows go in id order, like the stock reservation, so orders can't deadlock on them
+        dbService.executeBatch(conn, addProductSql, productRows);
+        dbService.executeUpdate(conn, addCustomerSql, saleDate, customerId, units, revenue);
+    }
+
+    /**
+     * Recomputes both rollups from the sales table. The id range of sales is
+     * split into chunks that are aggregated in parallel and merged in memory;
+     * the result then replaces the rollups in one transaction. Revenue is
+     * priced at the products' current prices, since sales don't store a price;
+     * sales of products deleted since are still counted in units, with no
+     * revenue. Sales with a NULL customer_id count towards the product
+     * rollup only; {@link #record} always has a customer.
+     *
+     * @return the number of sales rows scanned
+     */
+    public long rebuild(int threads, int chunkSize) throws SQLException {
+        long[] range = dbService.queryForObject("SELECT MIN(id), MAX(id), COUNT(*) FROM sales",
+                rs -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        Map<Long, Totals> byProduct = new ConcurrentHashMap<>();
+        Map<Long, Totals> byCustomer = new ConcurrentHashMap<>();
+
+        if (range != null && range[2] > 0) {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+            try {
+                List<Future<?>> chunks = new ArrayList<>();
+                for (long from = range[0]; from <= range[1]; from += chunkSize) {
+                    long lo = from;
+                    long hi = Math.min(range[1], from + chunkSize - 1);
+                    chunks.add(pool.submit(() -> {
+                        dbService.forEachRow(CHUNK_SQL, rs -> {
+                            long day = rs.getDate("sale_date").toLocalDate().toEpochDay();
+                            long units = rs.getLong("units");
+                            double revenue = rs.getDouble("revenue");
+                            byProduct.computeIfAbsent(key(day, rs.getInt("productId")), k -> new Totals())
+                                    .add(units, revenue);
+                            int customerId = rs.getInt("customer_id");
+                            if (!rs.wasNull()) {
+                                byCustomer.computeIfAbsent(key(day, customerId), k -> new Totals())
+                                        .add(units, revenue);
+                            }
+                        }, lo, hi);
+                        return null;
+                    }));
+                }
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Rollup rebuild interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                throw new SQLException("Rollup rebuild failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        try (Connection conn = dbService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                dbService.executeUpdate(conn, "DELETE FROM sales_daily_product");
+                dbService.executeUpdate(conn, "DELETE FROM sales_daily_customer");
+                insertAll(conn, "INSERT INTO sales_daily_product (sale_date, product_id, units, revenue) VALUES (?, ?, ?, ?)",
+                        byProduct);
+                insertAll(conn, "INSERT INTO sales_daily_customer (sale_date, customer_id, units, revenue) VALUES (?, ?, ?, ?)",
+                        byCustomer);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return range != null ? range[2] : 0;
+    }
+
+    private void insertAll(Connection conn, String sql, Map<Long, Totals> totals) throws SQLException {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        List<Map.Entry<Long, Totals>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<Long, Totals> entry : entries) {
+            long day = entry.getKey() >> 32;
+            int id = (int) (entry.getKey() & 0xFFFFFFFFL);
+            Totals t = entry.getValue();
+            batch.add(new Object[]{Date.valueOf(LocalDate.ofEpochDay(day)), id, t.units, t.revenue});
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                dbService.executeBatch(conn, sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            dbService.executeBatch(conn, sql, batch);
+        }
+    }
+
+    private static long key(long epochDay, int id) {
+        return (epochDay << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /** Units and revenue per product between two dates (inclusive), best sellers first. */
+    public List<Object[]> getRevenueByProduct(Date from, Date to) throws SQLException {
+        return dbService.query(REVENUE_BY_PRODUCT_SQL,
+                rs -> new Object[]{rs.getInt(1), rs.getString(2), rs.getLong(3), rs.getBigDecimal(4)},
+                from, to);
+    }
+
+    /** Units and spend per customer between two dates (inclusive), biggest spenders first. */
+    public List<Object[]> getSalesByCustomer(Date from, Date to) throws SQLException {
+        return dbService.query(SALES_BY_CUSTOMER_SQL,
+                rs -> new Object[]{rs.getInt(1), rs.getString(2), rs.getLong(3), rs.getBigDecimal(4)},
+                from, to);
+    }
+
+    /** Units and revenue per calendar month between two dates (inclusive). */
+    public List<Object[]> getMonthlyTrend(Date from, Date to) throws SQLException {
+        return dbService.query(MONTHLY_TREND_SQL,
+                rs -> new Object[]{String.format("%04d-%02d", rs.getInt(1), rs.getInt(2)),
+                        rs.getLong(3), rs.getBigDecimal(4)},
+                from, to);
+    }
+
+    private static class Totals {
+        private long units;
+        private double revenue;
+
+        synchronized void add(long units, double revenue) {
+            this.units += units;
+            this.revenue += revenue;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package services;
+
+import models.OrderLine;
+import services.DBService.ProductInfo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process ledger of stock that orders on this terminal are currently
+ * reserving. It lets hopeless orders fail before they open a transaction:
+ * a line is refused when the catalog's stock minus what other in-flight
+ * orders already hold can't cover it. The database remains the authority;
+ * anything the ledger lets through is still checked by the conditional
+ * update in {@link StockReservationService}.
+ *
+ * Products are guarded by a fixed set of lock stripes, so orders for
+ * different products don't contend.
+ */
+public class StockLedger {
+    private static final StockLedger INSTANCE = new StockLedger();
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Integer, Integer> held = new ConcurrentHashMap<>();
+
+    private StockLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public static StockLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Holds stock for every line, or for none of them. Returns the lines that
+     * can't possibly be served; an empty list means the hold was taken and
+     * must be given back with {@link #release}.
+     */
+    public List<OrderLine> tryHold(List<OrderLine> lines) throws SQLException {
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        List<OrderLine> taken = new ArrayList<>();
+        List<OrderLine> refused = new ArrayList<>();
+
+        for (OrderLine line : lines) {
+            ProductInfo product = catalog.get(line.getProductId());
+            ReentrantLock lock = stripeFor(line.getProductId());
+            lock.lock();
+            try {
+                int alreadyHeld = held.getOrDefault(line.getProductId(), 0);
+                if (product != null && product.stock - alreadyHeld < line.getQuantity()) {
+                    refused.add(line);
+                    continue;
+                }
+                held.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+                taken.add(line);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (!refused.isEmpty()) {
+            release(taken);
+        }
+        return refused;
+    }
+
+    public void release(List<OrderLine> lines) {
+        for (OrderLine line : lines) {
+            ReentrantLock lock = stripeFor(line.getProductId());
+            lock.lock();
+            try {
+                held.computeIfPresent(line.getProductId(), (id, qty) -> {
+                    int remaining = qty - line.getQuantity();
+                    return remaining > 0 ? remaining : null;
+                });
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock stripeFor(int productId) {
+        return stripes[Math.floorMod(Integer.hashCode(productId) * 0x9E3779B9, STRIPES)];
+    }
+}
@@ -0,0 +1,242 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives a whole delivery at once from a CSV file of {@code productId,quantity}
+ * lines (a header row is optional).
+ *
+ * The file is read as a stream in chunks of {@code receiving.chunkSize} lines.
+ * The well-formed lines of a chunk are summed per product and applied as
+ * {@code stocks = stocks + ?} increments in one JDBC batch and one
+ * transaction, in product id order like checkout, so receiving never
+ * overwrites stock sold in the meantime. A product id is judged by the
+ * database, not the {@link ProductCatalog}, which may not have seen a product
+ * another terminal just added: a line whose update changes no row is rejected
+ * as unknown. The increments are journaled in the same transaction.
+ *
+ * Chunks stay committed when a later one fails. The report then says where
+ * it stopped ({@link ReceivingReport#failure}) and up to which line the file
+ * was booked, so the rest can be received without booking the start twice.
+ */
+public class StockReceivingService {
+    private static final Logger LOGGER = Logger.getLogger(StockReceivingService.class.getName());
+    private static final String RECEIVE_SQL =
+            "UPDATE products SET stocks = stocks + ?, " + ProductChangeFeed.SET_VERSION + " WHERE id = ?";
+
+    private final DBService dbService;
+    private final int chunkSize;
+
+    public StockReceivingService(DBService dbService) {
+        this.dbService = dbService;
+        this.chunkSize = Math.max(1, DBConfig.load().getInt("receiving.chunkSize", 500));
+    }
+
+    /** Called after each chunk is committed. */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long bytesRead, long totalBytes, int linesRead);
+    }
+
+    public ReceivingReport receive(Path file, ProgressListener listener) throws IOException, SQLException {
+        long totalBytes = Files.size(file);
+        Tally tally = new Tally();
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8))) {
+            Map<Integer, Integer> chunk = new TreeMap<>();
+            Map<Integer, Integer> firstLine = new TreeMap<>();
+            int lineNumber = 0;
+            int linesInChunk = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1); // byte order mark, as Excel writes it
+                }
+                if (line.isBlank() || (lineNumber == 1 && !Character.isDigit(line.trim().charAt(0)))) {
+                    continue; // blank line or header row
+                }
+                List<String> values = Csv.parseLine(line);
+                String problem = null;
+                int productId = 0;
+                int quantity = 0;
+                try {
+                    productId = Integer.parseInt(values.get(0).trim());
+                    quantity = values.size() > 1 ? Integer.parseInt(values.get(1).trim()) : 0;
+                    if (quantity <= 0) {
+                        problem = "Quantity must be positive";
+                    }
+                } catch (NumberFormatException e) {
+                    problem = "Expected productId,quantity";
+                }
+                if (problem == null && chunk.getOrDefault(productId, 0) > Integer.MAX_VALUE - quantity) {
+                    problem = "Quantity too large";
+                }
+                if (problem != null) {
+                    tally.rejections.add(new Rejection(lineNumber, problem));
+                } else {
+                    chunk.merge(productId, quantity, Integer::sum);
+                    firstLine.putIfAbsent(productId, lineNumber);
+                }
+                if (++linesInChunk == chunkSize) {
+                    applyChunk(chunk, firstLine, tally, lineNumber);
+                    linesInChunk = 0;
+                    if (listener != null) {
+                        listener.progress(counter.count, totalBytes, lineNumber);
+                    }
+                }
+            }
+            applyChunk(chunk, firstLine, tally, lineNumber);
+            if (listener != null) {
+                listener.progress(totalBytes, totalBytes, lineNumber);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Receiving " + file + " stopped after line " + tally.committedThrough, e);
+            // Problems found past the last commit belong to lines that weren't booked anyway
+            tally.rejections.removeIf(rejection -> rejection.line > tally.committedThrough);
+            tally.rejections.sort((a, b) -> Integer.compare(a.line, b.line));
+            return new ReceivingReport(tally.updated.size(), tally.units, tally.rejections, tally.committedThrough,
+                    e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        tally.rejections.sort((a, b) -> Integer.compare(a.line, b.line));
+        return new ReceivingReport(tally.updated.size(), tally.units, tally.rejections, tally.committedThrough, null);
+    }
+
+    private void applyChunk(Map<Integer, Integer> chunk, Map<Integer, Integer> firstLine, Tally tally,
+                            int throughLine) throws SQLException {
+        if (chunk.isEmpty()) {
+            tally.committedThrough = throughLine;
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        List<Integer> ids = new ArrayList<>(chunk.size());
+        for (Map.Entry<Integer, Integer> entry : chunk.entrySet()) {
+            rows.add(new Object[]{entry.getValue(), ProductChangeFeed.nextVersion(), entry.getKey()});
+            ids.add(entry.getKey());
+        }
+
+        int[] counts;
+        List<DBService.ProductInfo> written;
+        try (Connection conn = dbService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                counts = dbService.executeBatch(conn, RECEIVE_SQL, rows);
+                Map<Integer, Integer> received = new TreeMap<>();
+                for (int i = 0; i < ids.size(); i++) {
+                    if (counts[i] != 0) {
+                        received.put(ids.get(i), chunk.get(ids.get(i)));
+                    }
+                }
+                InventoryService.getInstance().record(conn, InventoryService.RECEIVING, received);
+                written = dbService.readProducts(conn, received.keySet());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        ProductCatalog catalog = ProductCatalog.getInstance();
+        for (int i = 0; i < ids.size(); i++) {
+            int productId = ids.get(i);
+            int quantity = chunk.get(productId);
+            if (counts[i] == 0) {
+                // No such row: never existed, or deleted by another terminal
+                tally.rejections.add(new Rejection(firstLine.get(productId), "Unknown product " + productId));
+                continue;
+            }
+            tally.updated.add(productId);
+            tally.units += quantity;
+        }
+        written.forEach(catalog::put);
+        tally.committedThrough = throughLine;
+        chunk.clear();
+        firstLine.clear();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    private static class Tally {
+        final Set<Integer> updated = new HashSet<>();
+        final List<Rejection> rejections = new ArrayList<>();
+        long units;
+        int committedThrough; // every line up to this one is booked or rejected
+    }
+
+    public static class ReceivingReport {
+        public final int productsUpdated;
+        public final long unitsReceived;
+        public final List<Rejection> rejections;
+        /** The last line of the file that was dealt with; the whole file unless receiving failed. */
+        public final int linesDone;
+        /** Why receiving stopped after {@link #linesDone}, or null if it read the whole file. */
+        public final String failure;
+
+        public ReceivingReport(int productsUpdated, long unitsReceived, List<Rejection> rejections,
+                               int linesDone, String failure) {
+            this.productsUpdated = productsUpdated;
+            this.unitsReceived = unitsReceived;
+            this.rejections = rejections;
+            this.linesDone = linesDone;
+            this.failure = failure;
+        }
+    }
+
+    public static class Rejection {
+        public final int line;
+        public final String reason;
+
+        public Rejection(int line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + reason;
+        }
+    }
+}
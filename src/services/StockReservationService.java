@@ -0,0 +1,77 @@
+package services;
+
+import models.OrderLine;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes stock for an order inside the caller's transaction.
+ *
+ * Each product is decremented with a guarded {@code stocks >= ?} update, so
+ * stock can't go negative no matter how many terminals sell at once, and the
+ * update count of every row is checked. Rows are touched in ascending product
+ * id order so two orders locking the same products can't deadlock.
+ */
+public class StockReservationService {
+    static final String RESERVE_SQL =
+            "UPDATE products SET stocks = stocks - ?, " + ProductChangeFeed.SET_VERSION + " WHERE id = ? AND stocks >= ?";
+    private static final String STOCK_SQL = "SELECT stocks FROM products WHERE id = ?";
+
+    private final DBService dbService;
+
+    public StockReservationService(DBService dbService) {
+        this.dbService = dbService;
+    }
+
+    /**
+     * Decrements stock for every line. On any failure the caller must roll back;
+     * the returned failures say which lines couldn't be served and why.
+     */
+    public List<LineFailure> reserve(Connection conn, List<OrderLine> lines) throws SQLException {
+        List<LineFailure> failures = new ArrayList<>();
+        for (OrderLine line : mergeByProduct(lines)) {
+            int updated = dbService.executeUpdate(conn, RESERVE_SQL,
+                    line.getQuantity(), ProductChangeFeed.nextVersion(), line.getProductId(), line.getQuantity());
+            if (updated != 1) {
+                Integer available = dbService.queryForObject(conn, STOCK_SQL, rs -> rs.getInt(1), line.getProductId());
+                failures.add(available == null
+                        ? new LineFailure(line.getProductId(), line.getQuantity(), -1, "Product no longer exists")
+                        : new LineFailure(line.getProductId(), line.getQuantity(), available, "Not enough stock"));
+            }
+        }
+        return failures;
+    }
+
+    /** One line per product, in ascending product id order (the lock order). */
+    static List<OrderLine> mergeByProduct(List<OrderLine> lines) {
+        Map<Integer, OrderLine> merged = new LinkedHashMap<>();
+        for (OrderLine line : lines) {
+            merged.merge(line.getProductId(), line, (a, b) ->
+                    new OrderLine(a.getProductId(), a.getQuantity() + b.getQuantity(), a.getUnitPrice()));
+        }
+        List<OrderLine> sorted = new ArrayList<>(merged.values());
+        sorted.sort(Comparator.comparingInt(OrderLine::getProductId));
+        return sorted;
+    }
+
+    public static class LineFailure {
+        public final int productId;
+        public final int requested;
+        public final int available; // -1 when the product is gone
+
+        public final String reason;
+
+        public LineFailure(int productId, int requested, int available, String reason) {
+            this.productId = productId;
+            this.requested = requested;
+            this.available = available;
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package services;
+
+import dbconnection.DBConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds what changed in a table since it was last read, so a dashboard tab
+ * can patch its rows instead of reloading them. Works on the whole table in
+ * ascending order of a numeric key:
+ *
+ * <ul>
+ * <li>Deletes come from the {@code deleted_rows} tombstones written by
+ * {@link DBService#deleteRecord}.</li>
+ * <li>Inserts are rows with a key in the tail band: the last
+ * {@link #TAIL_KEYS} keys below the highest one seen, and anything above it.
+ * The band's keys are remembered, so a row whose insert commits after a
+ * higher key was already seen is still caught.</li>
+ * <li>Updates are rows whose {@code version} rose, for tables that have one
+ * (products, see {@link ProductChangeFeed}), re-reading {@code feed.overlapMs}
+ * back for late commits.</li>
+ * </ul>
+ *
+ * Every read happens in one REPEATABLE READ transaction, so a row count and
+ * the marks it is compared against agree. Calls are serialized per tracker.
+ */
+public class TableChangeTracker {
+    /** Keys below the highest seen that are still watched for late inserts. */
+    static final int TAIL_KEYS = 2000;
+    private static final int TOMBSTONE_REACH = 1000;
+
+    static final String TOMBSTONES_SQL =
+            "SELECT id, row_id FROM deleted_rows WHERE table_name = ? AND id > ? ORDER BY id";
+    private static final String TOMBSTONE_MARK_SQL = "SELECT MAX(id) FROM deleted_rows WHERE table_name = ?";
+
+    private final DBService dbService;
+    private final String table;
+    private final String key;
+    private final boolean versioned;
+    private final long overlapMicros = Math.max(0, DBConfig.load().getLong("feed.overlapMs", 5000)) * 1000;
+
+    private long highKey;
+    private List<Long> tail = Collections.emptyList();
+    private long tombstoneMark;
+    private final Set<Long> appliedTombstones = new HashSet<>();
+    private long versionMark;
+
+    public TableChangeTracker(DBService dbService, String table, String key) throws SQLException {
+        this.dbService = dbService;
+        this.table = table;
+        this.key = key;
+        boolean hasVersion = false;
+        for (String column : dbService.getColumnNames(table)) {
+            hasVersion |= "version".equalsIgnoreCase(column);
+        }
+        this.versioned = hasVersion;
+    }
+
+    /** Takes the table's current state as the base for {@link #poll} and returns its row count. */
+    public synchronized int start() throws SQLException {
+        try (Connection conn = dbService.getConnection()) {
+            return inSnapshot(conn, () -> {
+                Integer count = dbService.queryForObject(conn, "SELECT COUNT(*) FROM " + table, rs -> rs.getInt(1));
+                highKey = maxOf(conn, "SELECT MAX(" + key + ") FROM " + table);
+                tail = keysAbove(conn, highKey - TAIL_KEYS, Integer.MAX_VALUE);
+                tombstoneMark = maxOf(conn, TOMBSTONE_MARK_SQL, table);
+                appliedTombstones.clear();
+                dbService.forEachRow(conn, TOMBSTONES_SQL, rs -> appliedTombstones.add(rs.getLong(1)),
+                        table, tombstoneMark - TOMBSTONE_REACH);
+                versionMark = versioned ? maxOf(conn, "SELECT MAX(version) FROM " + table) : 0;
+                return count != null ? count : 0;
+            });
+        }
+    }
+
+    /**
+     * What changed since {@link #start} or the previous poll, or null when
+     * the caller should reload instead: the table was replaced, or more than
+     * {@code maxChanges} rows changed.
+     */
+    public synchronized Changes poll(int maxChanges) throws SQLException {
+        try (Connection conn = dbService.getConnection()) {
+            return inSnapshot(conn, () -> {
+                List<Long> deleted = new ArrayList<>();
+                boolean[] replaced = {false};
+                long bandStart = highKey - TAIL_KEYS;
+                long[] mark = {tombstoneMark};
+                dbService.forEachRow(conn, TOMBSTONES_SQL, rs -> {
+                    long id = rs.getLong(1);
+                    long rowId = rs.getLong(2);
+                    boolean wholeTable = rs.wasNull();
+                    mark[0] = Math.max(mark[0], id);
+                    if (!appliedTombstones.add(id)) {
+                        return; // tombstone ids are handed out before commit, so each poll looks back a little
+                    }
+                    if (wholeTable) {
+                        replaced[0] = true;
+                    } else if (rowId <= bandStart) {
+                        deleted.add(rowId); // rows in the band are compared key by key below
+                    }
+                }, table, tombstoneMark - TOMBSTONE_REACH);
+                if (replaced[0]) {
+                    return null;
+                }
+
+                List<Long> newTail = keysAbove(conn, bandStart, maxChanges + TAIL_KEYS + 1);
+                if (newTail.size() > maxChanges + TAIL_KEYS) {
+                    return null;
+                }
+
+                List<Object[]> updated = new ArrayList<>();
+                long[] highestVersion = {versionMark};
+                if (versioned) {
+                    int versionIndex = dbService.getColumnNames(table).stream()
+                            .map(String::toLowerCase).toList().indexOf("version");
+                    dbService.forEachRow(conn, "SELECT * FROM " + table + " WHERE version > ? ORDER BY " + key,
+                            rs -> {
+                                if (updated.size() <= maxChanges) {
+                                    Object[] row = DBService.toRow(rs);
+                                    updated.add(row);
+                                    highestVersion[0] = Math.max(highestVersion[0],
+                                            ((Number) row[versionIndex]).longValue());
+                                }
+                            }, Math.max(0, versionMark - overlapMicros));
+                    if (updated.size() > maxChanges) {
+                        return null;
+                    }
+                }
+                if (deleted.size() > maxChanges) {
+                    return null;
+                }
+
+                Changes changes = new Changes(deleted, tail, newTail, updated);
+                tombstoneMark = mark[0];
+                appliedTombstones.removeIf(id -> id <= mark[0] - TOMBSTONE_REACH);
+                versionMark = highestVersion[0];
+                if (!newTail.isEmpty()) {
+                    highKey = Math.max(highKey, newTail.get(newTail.size() - 1));
+                }
+                long newBandStart = highKey - TAIL_KEYS;
+                tail = newTail.stream().filter(k -> k > newBandStart).toList();
+                return changes;
+            });
+        }
+    }
+
+    private List<Long> keysAbove(Connection conn, long after, int limit) throws SQLException {
+        return dbService.query(conn, "SELECT " + key + " FROM " + table + " WHERE " + key + " > ? ORDER BY "
+                + key + " LIMIT ?", rs -> rs.getLong(1), after, limit);
+    }
+
+    private long maxOf(Connection conn, String sql, Object... params) throws SQLException {
+        Long max = dbService.queryForObject(conn, sql, rs -> {
+            long value = rs.getLong(1);
+            return rs.wasNull() ? 0L : value;
+        }, params);
+        return max != null ? max : 0;
+    }
+
+    private static <T> T inSnapshot(Connection conn, SnapshotWork<T> work) throws SQLException {
+        int isolation = conn.getTransactionIsolation();
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        conn.setAutoCommit(false);
+        try {
+            T result = work.run();
+            conn.commit();
+            return result;
+        } finally {
+            conn.rollback(); // no-op after the commit; ends the snapshot if the work failed
+            conn.setAutoCommit(true);
+            conn.setTransactionIsolation(isolation);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * One poll's worth of changes. Apply {@link #deleted} first; the tail
+     * lists are the keys above the band start before and after, i.e. the
+     * last rows of the table, in key order.
+     */
+    public static class Changes {
+        public final List<Long> deleted;
+        public final List<Long> tailBefore;
+        public final List<Long> tailAfter;
+        public final List<Object[]> updated;
+
+        public Changes(List<Long> deleted, List<Long> tailBefore, List<Long> tailAfter, List<Object[]> updated) {
+            this.deleted = deleted;
+            this.tailBefore = tailBefore;
+            this.tailAfter = tailAfter;
+            this.updated = updated;
+        }
+
+        public boolean isEmpty() {
+            return deleted.isEmpty() && tailBefore.equals(tailAfter) && updated.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package services;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What a dashboard table should show: column filters and sort order, pushed
+ * down to the database by {@link DBService}. Column names here are whatever the
+ * user picked; DBService only accepts the ones in the table's metadata.
+ */
+public class TableQuery {
+    private final String tableName;
+    private final String keyColumn;
+    private final Map<String, String> filters;
+    private final String sortColumn;
+    private final boolean ascending;
+
+    public TableQuery(String tableName, String keyColumn) {
+        this(tableName, keyColumn, Collections.emptyMap(), null, true);
+    }
+
+    private TableQuery(String tableName, String keyColumn, Map<String, String> filters,
+                       String sortColumn, boolean ascending) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.filters = filters;
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+    }
+
+    /** Returns a copy filtered on the given column values; blank values are ignored. */
+    public TableQuery withFilters(Map<String, String> columnFilters) {
+        Map<String, String> copy = new LinkedHashMap<>();
+        columnFilters.forEach((column, value) -> {
+            if (value != null && !value.trim().isEmpty()) {
+                copy.put(column, value.trim());
+            }
+        });
+        return new TableQuery(tableName, keyColumn, Collections.unmodifiableMap(copy), sortColumn, ascending);
+    }
+
+    public TableQuery withSort(String column, boolean ascending) {
+        return new TableQuery(tableName, keyColumn, filters, column, ascending);
+    }
+
+    public String getTableName() { return tableName; }
+    public String getKeyColumn() { return keyColumn; }
+    public Map<String, String> getFilters() { return filters; }
+    public String getSortColumn() { return sortColumn; }
+    public boolean isAscending() { return ascending; }
+
+    /** True when rows come out in key order, which is what keyset pagination needs. */
+    public boolean isSortedByKey() {
+        return sortColumn == null || sortColumn.equalsIgnoreCase(keyColumn);
+    }
+}
@@ -6,109 +6,102 @@ import models.Customer;
 import java.sql.*;
 
 public class UserService {
-    private Connection connection;
+    private final QueryMetrics metrics = QueryMetrics.getInstance();
 
     public UserService() throws SQLException {
-        this.connection = DBConnection.getConnection();
+        DBConnection.getPool();
     }
 
     // Register new customer (stores only in customer table)
     public boolean registerCustomer(Customer customer) {
-        try {
+        // Hash before borrowing a connection; it takes a while on purpose
+        String passwordHash = PasswordHasher.getInstance().hash(customer.getPassword());
+        try (Connection connection = DBConnection.getConnection()) {
             connection.setAutoCommit(false);
-            
-            // 1. Check if username exists in either table
-            if (usernameExists(customer.getUsername())) {
-                return false;
-            }
+            try {
+                // 1. Check if username exists in either table
+                if (usernameExists(connection, customer.getUsername())) {
+                    connection.rollback();
+                    return false;
+                }
 
-            // 2. Insert into customers table only
-            String customerSql = "INSERT INTO customers (username, password, address, cellNo) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement customerStmt = connection.prepareStatement(customerSql)) {
-                customerStmt.setString(1, customer.getUsername());
-                customerStmt.setString(2, customer.getPassword());
-                customerStmt.setString(3, customer.getAddress());
-                customerStmt.setString(4, customer.getCellNo());
-                customerStmt.executeUpdate();
-            }
+                // 2. Insert into customers table only
+                String customerSql = "INSERT INTO customers (username, password, address, cellNo) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement customerStmt = connection.prepareStatement(customerSql)) {
+                    customerStmt.setString(1, customer.getUsername());
+                    customerStmt.setString(2, passwordHash);
+                    customerStmt.setString(3, customer.getAddress());
+                    customerStmt.setString(4, customer.getCellNo());
+                    long started = System.nanoTime();
+                    long rows = -1;
+                    try {
+                        rows = customerStmt.executeUpdate();
+                    } finally {
+                        metrics.record(customerSql, started, rows);
+                    }
+                }
 
-            connection.commit();
-            return true;
-            
-        } catch (SQLException e) {
-            try {
-                connection.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+                connection.commit();
+                UsernameRegistry.getInstance().add(customer.getUsername());
+                return true;
+
+            } catch (SQLException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Taken by another terminal between the check and the insert
+            return false;
+        } catch (SQLException e) {
             e.printStackTrace();
             return false;
-        } finally {
-            try {
-                connection.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
     // Authenticate user by checking both tables
     public User authenticate(String username, String password) throws SQLException {
-        // First check customers table
-        String customerSql = "SELECT * FROM customers WHERE username = ? AND password = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(customerSql)) {
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                User user = new User();
-                user.setUsername(username);
-                user.setRole("Customer");
-                return user;
-            }
-        }
-
-        // Then check users table (for staff/admin)
-        String userSql = "SELECT * FROM users WHERE username = ? AND password = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(userSql)) {
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                User user = new User();
-                user.setUsername(username);
-                user.setRole(rs.getString("role_id")); // "Staff" or "Admin"
-                return user;
-            }
-        }
-        
-        return null;
+        return AuthService.getInstance().authenticate(username, password);
     }
 
     // Check if username exists in either table
-    private boolean usernameExists(String username) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM (SELECT username FROM customers UNION SELECT username FROM users) AS all_users WHERE username = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next() && rs.getInt(1) > 0;
-        }
+    private boolean usernameExists(Connection connection, String username) throws SQLException {
+        return UsernameRegistry.getInstance().exists(connection, username);
     }
 
     // For admin to create staff accounts (stores in users table)
     public boolean createStaffAccount(User staffUser) throws SQLException {
-        if (usernameExists(staffUser.getUsername())) {
-            return false;
-        }
+        String passwordHash = PasswordHasher.getInstance().hash(staffUser.getPassword());
+        try (Connection connection = DBConnection.getConnection()) {
+            if (usernameExists(connection, staffUser.getUsername())) {
+                return false;
+            }
 
-        String sql = "INSERT INTO users (username, password, role_id) VALUES (?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, staffUser.getUsername());
-            stmt.setString(2, staffUser.getPassword());
-            stmt.setString(3, "Staff");
-            return stmt.executeUpdate() > 0;
+            String sql = "INSERT INTO users (username, password, role_id) VALUES (?, ?, ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, staffUser.getUsername());
+                stmt.setString(2, passwordHash);
+                stmt.setString(3, "Staff");
+                long started = System.nanoTime();
+                long rows = -1;
+                try {
+                    rows = stmt.executeUpdate();
+                } finally {
+                    metrics.record(sql, started, rows);
+                }
+                if (rows > 0) {
+                    UsernameRegistry.getInstance().add(staffUser.getUsername());
+                    return true;
+                }
+                return false;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                return false;
+            }
         }
     }
-}
\ No newline at end of file
+}
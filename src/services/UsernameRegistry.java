@@ -0,0 +1,204 @@
+package services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Answers "is this username taken?" for sign-up and staff account creation.
+ *
+ * Every username in customers and users is loaded into a Bloom filter once,
+ * in the background. Names the filter has never seen are reported free
+ * without a query; the rest (taken names and the ~1% false positives) are
+ * confirmed with two indexed point lookups. Until the filter is loaded every
+ * check goes to the database.
+ *
+ * The filter only knows about names registered through this process, so a
+ * name taken on another terminal after warm-up can slip past it; the unique
+ * username indexes reject that insert.
+ */
+public class UsernameRegistry {
+    private static final Logger LOGGER = Logger.getLogger(UsernameRegistry.class.getName());
+    private static final UsernameRegistry INSTANCE = new UsernameRegistry();
+
+    static final String EXISTS_SQL =
+            "SELECT CASE WHEN EXISTS (SELECT 1 FROM customers WHERE username = ?) " +
+            "OR EXISTS (SELECT 1 FROM users WHERE username = ?) THEN 1 ELSE 0 END";
+    private static final int MIN_CAPACITY = 10000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final AtomicBoolean warming = new AtomicBoolean();
+    private final ExecutorService warmer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "username-registry-warm-up");
+        t.setDaemon(true);
+        return t;
+    });
+    // Names registered while no filter was loaded; the next load adds them
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter filter;
+    private DBService dbService;
+
+    private UsernameRegistry() {
+    }
+
+    public static UsernameRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /** Starts loading the filter in the background if it isn't loaded or loading already. */
+    public void warmUpAsync() {
+        if (!warming.compareAndSet(false, true)) {
+            return;
+        }
+        warmer.submit(() -> {
+            try {
+                load();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not load usernames; checks will query the database", e);
+            } finally {
+                warming.set(false);
+            }
+        });
+    }
+
+    /** Whether the name is used by a customer or a staff account, checked on the caller's connection. */
+    public boolean exists(Connection conn, String username) throws SQLException {
+        BloomFilter current = filter;
+        if (current == null) {
+            warmUpAsync();
+        } else if (!current.mightContain(username)) {
+            return false;
+        }
+        Integer found = getDBService().queryForObject(conn, EXISTS_SQL, rs -> rs.getInt(1), username, username);
+        return found != null && found == 1;
+    }
+
+    /** Records a name that was just registered. */
+    public void add(String username) {
+        BloomFilter current = filter;
+        if (current == null) {
+            pending.add(username);
+            current = filter;
+            if (current == null) {
+                return;
+            }
+        }
+        current.add(username);
+        if (current.isOverCapacity()) {
+            // The false positive rate climbs past the target from here; size a new filter
+            filter = null;
+            warmUpAsync();
+        }
+    }
+
+    /** Forgets the loaded names and loads them again, e.g. after a restore. */
+    public void invalidate() {
+        filter = null;
+        warmUpAsync();
+    }
+
+    private void load() throws SQLException {
+        DBService db = getDBService();
+        Long count = db.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM customers) + (SELECT COUNT(*) FROM users)", rs -> rs.getLong(1));
+        long expected = count != null ? count : 0;
+        // Leave room to grow before a reload is needed
+        BloomFilter loaded = new BloomFilter((int) Math.min(Integer.MAX_VALUE / 16, Math.max(MIN_CAPACITY, expected * 2)));
+        db.forEachRow("SELECT username FROM customers", rs -> loaded.add(rs.getString(1)));
+        db.forEachRow("SELECT username FROM users", rs -> loaded.add(rs.getString(1)));
+        filter = loaded;
+        for (String name : pending) {
+            loaded.add(name);
+            pending.remove(name);
+        }
+        LOGGER.fine("Loaded " + expected + " usernames into the registry");
+    }
+
+    private synchronized DBService getDBService() throws SQLException {
+        if (dbService == null) {
+            dbService = new DBService();
+        }
+        return dbService;
+    }
+
+    /**
+     * Fixed-size Bloom filter over lower-cased names (MySQL compares usernames
+     * case-insensitively). Bits are set with CAS, so adds and lookups need no lock.
+     */
+    private static class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private final AtomicInteger added = new AtomicInteger();
+
+        BloomFilter(int capacity) {
+            this.capacity = capacity;
+            long m = (long) Math.ceil(-capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+        }
+
+        void add(String name) {
+            if (name == null) {
+                return;
+            }
+            long[] h = hash(name);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = bits.get(word);
+                } while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask));
+            }
+            added.incrementAndGet();
+        }
+
+        boolean mightContain(String name) {
+            if (name == null) {
+                return false;
+            }
+            long[] h = hash(name);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h[0] + i * h[1], bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isOverCapacity() {
+            return added.get() > capacity;
+        }
+
+        // FNV-1a, plus a murmur-mixed copy of it as the step for double hashing
+        private static long[] hash(String name) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8)) {
+                h ^= b;
+                h *= 0x100000001b3L;
+            }
+            long h2 = h;
+            h2 ^= h2 >>> 33;
+            h2 *= 0xff51afd7ed558ccdL;
+            h2 ^= h2 >>> 33;
+            h2 *= 0xc4ceb9fe1a85ec53L;
+            h2 ^= h2 >>> 33;
+            return new long[]{h, h2 | 1};
+        }
+    }
+}